@@ -0,0 +1,137 @@
+package logica;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cola de cambios (inserciones, actualizaciones y borrados) hechos desde la interfaz
+ * en modo lote. Nada se envía al servidor hasta flush(), que aplica toda la cola con
+ * addBatch/executeBatch dentro de una sola transacción.
+ */
+public class BatchWriter {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    public enum Operation { INSERT, UPDATE, DELETE }
+
+    /** Un cambio pendiente. Para INSERT no hay columna de condición. */
+    public static final class Change {
+        private final Operation operation;
+        private final String tableName;
+        private final List<String> columns;
+        private final List<Object> values;
+        private final String whereColumn;
+        private final Object whereValue;
+
+        Change(Operation operation, String tableName, List<String> columns, List<Object> values,
+               String whereColumn, Object whereValue) {
+            this.operation = operation;
+            this.tableName = tableName;
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+            this.values = Collections.unmodifiableList(new ArrayList<>(values));
+            this.whereColumn = whereColumn;
+            this.whereValue = whereValue;
+        }
+
+        public Operation getOperation() { return operation; }
+        public String getTableName() { return tableName; }
+        public List<String> getColumns() { return columns; }
+        public List<Object> getValues() { return values; }
+        public String getWhereColumn() { return whereColumn; }
+        public Object getWhereValue() { return whereValue; }
+
+        @Override
+        public String toString() {
+            switch (operation) {
+                case INSERT: return "INSERT en " + tableName + " " + values;
+                case UPDATE: return "UPDATE de " + tableName + " con " + whereColumn + " = " + whereValue;
+                default: return "DELETE de " + tableName + " con " + whereColumn + " = " + whereValue;
+            }
+        }
+    }
+
+    /** Fila que no se pudo aplicar; el resto del lote sí se confirmó. */
+    public static final class Failure {
+        private final int index;
+        private final Change change;
+        private final String message;
+
+        Failure(int index, Change change, String message) {
+            this.index = index;
+            this.change = change;
+            this.message = message;
+        }
+
+        /** Posición del cambio en el lote, empezando en 0. */
+        public int getIndex() { return index; }
+        public Change getChange() { return change; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "#" + (index + 1) + " " + change + ": " + message;
+        }
+    }
+
+    public static final class Result {
+        private final int applied;
+        private final List<Failure> failures;
+
+        Result(int applied, List<Failure> failures) {
+            this.applied = applied;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public int getApplied() { return applied; }
+        public List<Failure> getFailures() { return failures; }
+    }
+
+    private final List<Change> pending = new ArrayList<>();
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    public synchronized void queueInsert(String tableName, List<Object> values, List<String> columns) {
+        pending.add(new Change(Operation.INSERT, tableName, columns, values, null, null));
+    }
+
+    public synchronized void queueUpdate(String tableName, List<Object> values, List<String> columns,
+                                         String whereColumn, Object whereValue) {
+        pending.add(new Change(Operation.UPDATE, tableName, columns, values, whereColumn, whereValue));
+    }
+
+    public synchronized void queueDelete(String tableName, String whereColumn, Object whereValue) {
+        pending.add(new Change(Operation.DELETE, tableName, Collections.emptyList(), Collections.emptyList(),
+                whereColumn, whereValue));
+    }
+
+    public synchronized int size() { return pending.size(); }
+    public synchronized void clear() { pending.clear(); }
+
+    public int getBatchSize() { return batchSize; }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("El tamaño de lote debe ser positivo");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Aplica y vacía la cola. Los cambios que fallen se informan en el resultado y
+     * no impiden confirmar los demás. Si el lote entero se cancela o falla, la
+     * transacción se deshace y los cambios vuelven a la cola.
+     */
+    public Result flush(DatabaseConnection db, CancelToken token) throws java.sql.SQLException {
+        List<Change> changes;
+        synchronized (this) {
+            changes = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (changes.isEmpty()) return new Result(0, new ArrayList<>());
+        try {
+            return db.executeBatch(changes, batchSize, token);
+        } catch (java.sql.SQLException | RuntimeException e) {
+            synchronized (this) {
+                pending.addAll(0, changes);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package logica;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Permite cancelar desde otro hilo la consulta que se esté ejecutando.
+ * DatabaseConnection registra aquí cada Statement mientras está activo y
+ * cancel() lo aborta en el servidor con Statement.cancel(). Lo que no es un
+ * Statement (un COPY) registra en su lugar la acción que lo cancela.
+ */
+public class CancelToken {
+    private volatile boolean cancelled;
+    private volatile Statement current;
+    private volatile Runnable action;
+
+    /** Asocia el statement en curso; si ya se pidió cancelar, lo cancela al instante. */
+    public void register(Statement statement) throws SQLException {
+        current = statement;
+        if (cancelled) {
+            statement.cancel();
+        }
+    }
+
+    public void unregister(Statement statement) {
+        if (current == statement) {
+            current = null;
+        }
+    }
+
+    /** Acción que aborta la operación en curso; si ya se pidió cancelar, se ejecuta al instante. */
+    public void register(Runnable onCancel) {
+        action = onCancel;
+        if (cancelled) {
+            onCancel.run();
+        }
+    }
+
+    public void unregister(Runnable onCancel) {
+        if (action == onCancel) {
+            action = null;
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        Runnable a = action;
+        if (a != null) {
+            a.run();
+        }
+        Statement s = current;
+        if (s != null) {
+            try {
+                s.cancel();
+            } catch (SQLException e) {
+                System.err.println("Error al cancelar consulta: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Lanza una excepción si la operación fue cancelada; útil entre pasos de una tarea. */
+    public void throwIfCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Operación cancelada por el usuario", "57014");
+        }
+    }
+}
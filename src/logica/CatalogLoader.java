@@ -0,0 +1,196 @@
+package logica;
+
+import modelo.ColumnInfo;
+import modelo.ForeignKeyInfo;
+import modelo.IndexInfo;
+import modelo.TableSchema;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.TypeInfo;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Introspección masiva del catálogo de PostgreSQL. En lugar de llamar a
+ * getPrimaryKeys/getColumns tabla por tabla, lee columnas, claves primarias,
+ * valores por defecto, identidad/serial, índices y claves foráneas de todas las
+ * tablas con tres consultas enviadas en un único viaje al servidor.
+ */
+public class CatalogLoader {
+
+    // Las mismas tablas que lista getTables(null, null, "%", {"TABLE"}) del driver, de cualquier esquema
+    private static final String TABLE_FILTER =
+            "c.relkind = 'r' AND n.nspname !~ '^pg_' AND n.nspname <> 'information_schema'";
+
+    private static final String COLUMNS_SQL =
+            "SELECT c.oid AS reloid, c.relname, c.reltuples::bigint AS reltuples, a.attname, t.typname, a.atttypid, a.atttypmod, t.typlen,"
+            + " a.attidentity, pg_catalog.pg_get_expr(d.adbin, d.adrelid) AS column_default,"
+            + " EXISTS (SELECT 1 FROM pg_catalog.pg_index i WHERE i.indrelid = c.oid AND i.indisprimary"
+            + "         AND a.attnum = ANY (i.indkey)) AS is_pk"
+            + " FROM pg_catalog.pg_class c"
+            + " JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace"
+            + " JOIN pg_catalog.pg_attribute a ON a.attrelid = c.oid AND a.attnum > 0 AND NOT a.attisdropped"
+            + " JOIN pg_catalog.pg_type t ON t.oid = a.atttypid"
+            + " LEFT JOIN pg_catalog.pg_attrdef d ON d.adrelid = c.oid AND d.adnum = a.attnum"
+            + " WHERE " + TABLE_FILTER
+            // Si el nombre se repite en varios esquemas, primero la tabla visible en el search_path
+            + " ORDER BY c.relname, NOT pg_catalog.pg_table_is_visible(c.oid), n.nspname, a.attnum";
+
+    private static final String INDEXES_SQL =
+            "SELECT c.oid AS reloid, c.relname, ic.relname AS index_name, am.amname, i.indisunique, i.indisprimary,"
+            + " pg_catalog.pg_get_indexdef(i.indexrelid) AS definition,"
+            + " ARRAY(SELECT coalesce(a.attname, '') FROM unnest(i.indkey) WITH ORDINALITY AS k(attnum, ord)"
+            + "       LEFT JOIN pg_catalog.pg_attribute a ON a.attrelid = c.oid AND a.attnum = k.attnum"
+            + "       ORDER BY k.ord) AS columns"
+            + " FROM pg_catalog.pg_index i"
+            + " JOIN pg_catalog.pg_class c ON c.oid = i.indrelid"
+            + " JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace"
+            + " JOIN pg_catalog.pg_class ic ON ic.oid = i.indexrelid"
+            + " JOIN pg_catalog.pg_am am ON am.oid = ic.relam"
+            + " WHERE " + TABLE_FILTER
+            + " ORDER BY c.relname, ic.relname";
+
+    private static final String FOREIGN_KEYS_SQL =
+            "SELECT c.oid AS reloid, c.relname, con.conname, rc.relname AS ref_table,"
+            + " ARRAY(SELECT a.attname FROM unnest(con.conkey) WITH ORDINALITY AS k(attnum, ord)"
+            + "       JOIN pg_catalog.pg_attribute a ON a.attrelid = con.conrelid AND a.attnum = k.attnum"
+            + "       ORDER BY k.ord) AS columns,"
+            + " ARRAY(SELECT a.attname FROM unnest(con.confkey) WITH ORDINALITY AS k(attnum, ord)"
+            + "       JOIN pg_catalog.pg_attribute a ON a.attrelid = con.confrelid AND a.attnum = k.attnum"
+            + "       ORDER BY k.ord) AS ref_columns"
+            + " FROM pg_catalog.pg_constraint con"
+            + " JOIN pg_catalog.pg_class c ON c.oid = con.conrelid"
+            + " JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace"
+            + " JOIN pg_catalog.pg_class rc ON rc.oid = con.confrelid"
+            + " WHERE con.contype = 'f' AND " + TABLE_FILTER
+            + " ORDER BY c.relname, con.conname";
+
+    /**
+     * Lee el catálogo completo y devuelve un esquema por tabla, ordenado por nombre.
+     */
+    public Map<String, TableSchema> loadAll(Connection conn, CancelToken token) throws SQLException {
+        Map<String, List<ColumnInfo>> columns = new LinkedHashMap<>();
+        Map<String, Long> estimatedRows = new HashMap<>();
+        Map<String, List<IndexInfo>> indexes = new HashMap<>();
+        Map<String, List<ForeignKeyInfo>> foreignKeys = new HashMap<>();
+        // Tabla elegida para cada nombre (la aplicación nombra las tablas sin esquema)
+        Map<String, Long> tableOids = new HashMap<>();
+        TypeInfo types = conn.unwrap(BaseConnection.class).getTypeInfo();
+
+        try (Statement stmt = conn.createStatement()) {
+            if (token != null) token.register(stmt);
+            try {
+                // Las tres consultas viajan juntas (protocolo simple) y se leen en orden
+                boolean hasResult = stmt.execute(COLUMNS_SQL + ";\n" + INDEXES_SQL + ";\n" + FOREIGN_KEYS_SQL);
+                int resultIndex = 0;
+                while (hasResult || stmt.getUpdateCount() != -1) {
+                    if (hasResult) {
+                        try (ResultSet rs = stmt.getResultSet()) {
+                            switch (resultIndex) {
+                                case 0: readColumns(rs, types, columns, estimatedRows, tableOids); break;
+                                case 1: readIndexes(rs, indexes, tableOids); break;
+                                default: readForeignKeys(rs, foreignKeys, tableOids); break;
+                            }
+                        }
+                        resultIndex++;
+                    }
+                    hasResult = stmt.getMoreResults();
+                }
+            } finally {
+                if (token != null) token.unregister(stmt);
+            }
+        }
+
+        Map<String, TableSchema> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ColumnInfo>> e : columns.entrySet()) {
+            String table = e.getKey();
+            result.put(table, new TableSchema(table, e.getValue(),
+                    indexes.getOrDefault(table, Collections.emptyList()),
+                    foreignKeys.getOrDefault(table, Collections.emptyList()),
+                    estimatedRows.getOrDefault(table, -1L)));
+        }
+        return result;
+    }
+
+    private void readColumns(ResultSet rs, TypeInfo types, Map<String, List<ColumnInfo>> columns,
+                             Map<String, Long> estimatedRows, Map<String, Long> tableOids) throws SQLException {
+        while (rs.next()) {
+            String table = rs.getString("relname");
+            long oid = rs.getLong("reloid");
+            // Otra tabla con el mismo nombre en un esquema posterior: se queda la primera
+            Long chosen = tableOids.putIfAbsent(table, oid);
+            if (chosen != null && chosen != oid) continue;
+            String name = rs.getString("attname");
+            String typeName = rs.getString("typname");
+            String def = rs.getString("column_default");
+            String identity = rs.getString("attidentity");
+            boolean isPk = rs.getBoolean("is_pk");
+
+            boolean isSerial = def != null && def.toLowerCase().contains("nextval");
+            boolean isAuto = isSerial || "a".equals(identity) || "d".equals(identity);
+            // Mismo nombre de tipo que informa getColumns para las columnas serial
+            if (isSerial) {
+                switch (typeName) {
+                    case "int4": typeName = "serial"; break;
+                    case "int8": typeName = "bigserial"; break;
+                    case "int2": typeName = "smallserial"; break;
+                    default: break;
+                }
+            }
+
+            int sqlType = types.getSQLType(rs.getString("typname"));
+            int size = columnSize(rs.getString("typname"), rs.getInt("atttypmod"), rs.getInt("typlen"));
+            columns.computeIfAbsent(table, k -> new ArrayList<>())
+                    .add(new ColumnInfo(name, typeName, isPk, isAuto, sqlType, size, def, (int) rs.getLong("atttypid")));
+            estimatedRows.putIfAbsent(table, rs.getLong("reltuples"));
+        }
+    }
+
+    // Equivalente aproximado de COLUMN_SIZE de DatabaseMetaData.getColumns
+    private static int columnSize(String typeName, int typmod, int typlen) {
+        switch (typeName) {
+            case "varchar":
+            case "bpchar":
+                return typmod > 4 ? typmod - 4 : 0;
+            case "numeric":
+                return typmod > 4 ? ((typmod - 4) >> 16) & 0xffff : 0;
+            default:
+                return Math.max(typlen, 0);
+        }
+    }
+
+    private void readIndexes(ResultSet rs, Map<String, List<IndexInfo>> indexes,
+                             Map<String, Long> tableOids) throws SQLException {
+        while (rs.next()) {
+            if (!isChosen(rs, tableOids)) continue;
+            indexes.computeIfAbsent(rs.getString("relname"), k -> new ArrayList<>())
+                    .add(new IndexInfo(rs.getString("index_name"), stringList(rs.getArray("columns")),
+                            rs.getString("amname"), rs.getBoolean("indisunique"),
+                            rs.getBoolean("indisprimary"), rs.getString("definition")));
+        }
+    }
+
+    private void readForeignKeys(ResultSet rs, Map<String, List<ForeignKeyInfo>> foreignKeys,
+                                 Map<String, Long> tableOids) throws SQLException {
+        while (rs.next()) {
+            if (!isChosen(rs, tableOids)) continue;
+            foreignKeys.computeIfAbsent(rs.getString("relname"), k -> new ArrayList<>())
+                    .add(new ForeignKeyInfo(rs.getString("conname"), stringList(rs.getArray("columns")),
+                            rs.getString("ref_table"), stringList(rs.getArray("ref_columns"))));
+        }
+    }
+
+    private static boolean isChosen(ResultSet rs, Map<String, Long> tableOids) throws SQLException {
+        Long oid = tableOids.get(rs.getString("relname"));
+        return oid != null && oid == rs.getLong("reloid");
+    }
+
+    private static List<String> stringList(Array array) throws SQLException {
+        if (array == null) return new ArrayList<>();
+        try {
+            return new ArrayList<>(Arrays.asList((String[]) array.getArray()));
+        } finally {
+            array.free();
+        }
+    }
+}
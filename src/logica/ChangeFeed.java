@@ -0,0 +1,225 @@
+package logica;
+
+import modelo.TableSchema;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cambios de filas empujados por el servidor con LISTEN/NOTIFY. Un trigger por tabla
+ * (ver {@link #triggerStatements}) envía la operación y la clave primaria de cada fila
+ * tocada; una única conexión dedicada escucha el canal y reparte los avisos a los
+ * listeners de cada tabla, agrupados por lectura.
+ *
+ * NOTIFY solo se entrega al confirmar la transacción, así que los avisos nunca
+ * anuncian cambios que luego se deshacen.
+ */
+public class ChangeFeed {
+    public static final String CHANNEL = "visor_cambios";
+    static final String FUNCTION = "visor_notificar_cambio";
+    static final String TRIGGER = "visor_cambios";
+    // Espera máxima de cada lectura de avisos; también marca cada cuánto se mira si hay que parar
+    private static final int POLL_TIMEOUT_MS = 1_000;
+    private static final long RECONNECT_DELAY_MS = 5_000;
+
+    public enum Operation { INSERT, UPDATE, DELETE }
+
+    /** Una fila cambiada. La clave llega como texto, un valor por columna de la PK. */
+    public static final class RowChange {
+        private final Operation operation;
+        private final List<String> key;
+
+        RowChange(Operation operation, List<String> key) {
+            this.operation = operation;
+            this.key = Collections.unmodifiableList(key);
+        }
+
+        public Operation getOperation() { return operation; }
+        public List<String> getKey() { return key; }
+
+        @Override
+        public String toString() {
+            return operation + " " + key;
+        }
+    }
+
+    /** Se llama desde el hilo de escucha, no desde el de la interfaz. */
+    @FunctionalInterface
+    public interface Listener {
+        void onChanges(String tableName, List<RowChange> changes);
+    }
+
+    private final DatabaseConnection db;
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+    private Thread thread;
+
+    ChangeFeed(DatabaseConnection db) {
+        this.db = db;
+    }
+
+    /** Recibe los cambios de la tabla; la conexión de escucha se abre con el primer listener. */
+    public synchronized void subscribe(String tableName, Listener listener) {
+        listeners.computeIfAbsent(tableName, t -> new CopyOnWriteArrayList<>()).add(listener);
+        if (thread == null) {
+            thread = new Thread(this::listen, "feed-cambios");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /** Sin listeners se cierra la conexión de escucha. */
+    public synchronized void unsubscribe(String tableName, Listener listener) {
+        List<Listener> list = listeners.get(tableName);
+        if (list == null) return;
+        list.remove(listener);
+        if (list.isEmpty()) listeners.remove(tableName);
+        if (listeners.isEmpty() && thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void listen() {
+        Thread self = Thread.currentThread();
+        while (!self.isInterrupted()) {
+            try (Connection conn = db.openDedicatedConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("LISTEN " + CHANNEL);
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (!self.isInterrupted()) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        dispatch(notifications);
+                    }
+                }
+            } catch (SQLException e) {
+                if (self.isInterrupted()) return;
+                System.err.println("Error en la escucha de cambios: " + e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(PGNotification[] notifications) {
+        // Todos los avisos de una lectura se entregan juntos, agrupados por tabla
+        Map<String, List<RowChange>> byTable = new HashMap<>();
+        for (PGNotification n : notifications) {
+            List<String> fields = parsePayload(n.getParameter());
+            if (fields == null || fields.size() < 3) {
+                System.err.println("Aviso de cambio no válido: " + n.getParameter());
+                continue;
+            }
+            Operation op = operationOf(fields.get(0));
+            if (op == null || !listeners.containsKey(fields.get(1))) continue;
+            byTable.computeIfAbsent(fields.get(1), t -> new ArrayList<>())
+                    .add(new RowChange(op, new ArrayList<>(fields.subList(2, fields.size()))));
+        }
+        for (Map.Entry<String, List<RowChange>> entry : byTable.entrySet()) {
+            List<Listener> list = listeners.get(entry.getKey());
+            if (list == null) continue;
+            for (Listener listener : list) {
+                try {
+                    listener.onChanges(entry.getKey(), entry.getValue());
+                } catch (RuntimeException e) {
+                    System.err.println("Error al notificar cambios: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static Operation operationOf(String code) {
+        switch (code) {
+            case "I": return Operation.INSERT;
+            case "U": return Operation.UPDATE;
+            case "D": return Operation.DELETE;
+            default: return null;
+        }
+    }
+
+    /**
+     * El aviso es una serie de campos "longitud:texto" seguidos: operación, tabla y los
+     * valores de la PK. Con la longitud delante no hace falta escapar nada.
+     */
+    static List<String> parsePayload(String payload) {
+        List<String> fields = new ArrayList<>();
+        int pos = 0;
+        while (pos < payload.length()) {
+            int colon = payload.indexOf(':', pos);
+            if (colon < 0) return null;
+            int length;
+            try {
+                length = Integer.parseInt(payload.substring(pos, colon));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            int end = colon + 1 + length;
+            if (length < 0 || end > payload.length()) return null;
+            fields.add(payload.substring(colon + 1, end));
+            pos = end;
+        }
+        return fields;
+    }
+
+    /**
+     * Sentencias que instalan el aviso en la tabla: una función común a todas las tablas,
+     * que recibe los nombres de las columnas de la PK como argumentos, y el trigger por fila.
+     * Si un UPDATE cambia la PK se avisa también del borrado de la clave antigua. Cada
+     * valor de la clave va en la salida de texto del tipo (::text), que el codec de la
+     * columna sabe leer; la de jsonb escribe otra cosa, p. ej. fechas con T.
+     */
+    static List<String> triggerStatements(TableSchema schema) {
+        int[] pk = schema.getPrimaryKeyIndices();
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < pk.length; i++) {
+            if (i > 0) args.append(", ");
+            args.append('\'').append(schema.getColumnName(pk[i]).replace("'", "''")).append('\'');
+        }
+        String table = schema.getTableName();
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE OR REPLACE FUNCTION " + FUNCTION + "() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+                + "DECLARE\n"
+                + "  nueva text := '';\n"
+                + "  antigua text := '';\n"
+                + "  col text;\n"
+                + "  valor text;\n"
+                + "BEGIN\n"
+                + "  FOREACH col IN ARRAY TG_ARGV LOOP\n"
+                + "    IF TG_OP <> 'DELETE' THEN\n"
+                + "      EXECUTE format('SELECT ($1).%I::text', col) USING NEW INTO valor;\n"
+                + "      nueva := nueva || length(valor) || ':' || valor;\n"
+                + "    END IF;\n"
+                + "    IF TG_OP <> 'INSERT' THEN\n"
+                + "      EXECUTE format('SELECT ($1).%I::text', col) USING OLD INTO valor;\n"
+                + "      antigua := antigua || length(valor) || ':' || valor;\n"
+                + "    END IF;\n"
+                + "  END LOOP;\n"
+                + "  IF TG_OP = 'DELETE' OR (TG_OP = 'UPDATE' AND antigua <> nueva) THEN\n"
+                + "    PERFORM pg_notify('" + CHANNEL + "', '1:D' || length(TG_TABLE_NAME) || ':' || TG_TABLE_NAME || antigua);\n"
+                + "  END IF;\n"
+                + "  IF TG_OP <> 'DELETE' THEN\n"
+                + "    PERFORM pg_notify('" + CHANNEL + "', '1:' || left(TG_OP, 1) || length(TG_TABLE_NAME) || ':'"
+                + " || TG_TABLE_NAME || nueva);\n"
+                + "  END IF;\n"
+                + "  RETURN NULL;\n"
+                + "END $$");
+        statements.add("DROP TRIGGER IF EXISTS " + TRIGGER + " ON " + table);
+        statements.add("CREATE TRIGGER " + TRIGGER + " AFTER INSERT OR UPDATE OR DELETE ON " + table
+                + " FOR EACH ROW EXECUTE FUNCTION " + FUNCTION + "(" + args + ")");
+        return statements;
+    }
+}
@@ -0,0 +1,328 @@
+package logica;
+
+import modelo.DatabaseConfig;
+
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool de conexiones JDBC propio de la capa lógica.
+ * Mantiene entre minSize y maxSize conexiones físicas, valida cada conexión
+ * al prestarla, cierra las que pasan demasiado tiempo ociosas y registra
+ * los tiempos de préstamo y devolución. Cada conexión física tiene además
+ * su propia caché de PreparedStatement (ver {@link Lease#prepare}).
+ */
+public class ConnectionPool {
+    public static final int DEFAULT_MIN_SIZE = 1;
+    public static final int DEFAULT_MAX_SIZE = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    public static final long DEFAULT_BORROW_TIMEOUT_MS = 30 * 1000;
+    private static final int VALIDATION_TIMEOUT_S = 2;
+    // PreparedStatement reutilizables por conexión física
+    public static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final DatabaseConfig config;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long borrowTimeoutMs;
+
+    // Conexiones libres; la más reciente al principio para reutilizar las "calientes"
+    private final Deque<PooledEntry> idle = new ArrayDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    // Estadísticas de préstamo
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong returnCount = new AtomicLong();
+    private final AtomicLong holdNanos = new AtomicLong();
+    private final AtomicLong maxHoldNanos = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    public ConnectionPool(DatabaseConfig config) throws SQLException {
+        this(config, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_IDLE_TIMEOUT_MS, DEFAULT_BORROW_TIMEOUT_MS);
+    }
+
+    public ConnectionPool(DatabaseConfig config, int minSize, int maxSize,
+                          long idleTimeoutMs, long borrowTimeoutMs) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Tamaños de pool inválidos: min=" + minSize + ", max=" + maxSize);
+        }
+        this.config = config.copy();
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits = new Semaphore(maxSize, true);
+
+        // Abrimos las conexiones mínimas de inmediato: si fallan, la configuración es incorrecta
+        try {
+            for (int i = 0; i < Math.max(1, minSize); i++) {
+                idle.addFirst(openEntry());
+            }
+        } catch (SQLException e) {
+            closeIdle();
+            throw e;
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión válida. Debe devolverse cerrando el {@link Lease},
+     * idealmente con try-with-resources.
+     */
+    public Lease borrow() throws SQLException {
+        if (closed) throw new SQLException("El pool de conexiones está cerrado");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Tiempo de espera agotado al obtener una conexión del pool");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión", e);
+        }
+
+        try {
+            PooledEntry entry = takeValidEntry();
+            long waited = System.nanoTime() - start;
+            borrowCount.incrementAndGet();
+            borrowWaitNanos.addAndGet(waited);
+            maxBorrowWaitNanos.accumulateAndGet(waited, Math::max);
+            return new Lease(entry);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledEntry takeValidEntry() throws SQLException {
+        while (true) {
+            PooledEntry entry;
+            synchronized (idle) {
+                entry = idle.pollFirst();
+            }
+            if (entry == null) {
+                return openEntry();
+            }
+            if (isValid(entry)) {
+                return entry;
+            }
+            validationFailures.incrementAndGet();
+            discard(entry);
+        }
+    }
+
+    private boolean isValid(PooledEntry entry) {
+        try {
+            return !entry.connection.isClosed() && entry.connection.isValid(VALIDATION_TIMEOUT_S);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledEntry openEntry() throws SQLException {
+        Connection c = DriverManager.getConnection(config.getConnectionUrl(), config.getUsername(), config.getPassword());
+        totalConnections.incrementAndGet();
+        return new PooledEntry(c, new StatementCache(STATEMENT_CACHE_SIZE, statementStats));
+    }
+
+    private void giveBack(PooledEntry entry, long borrowedAt) {
+        long held = System.nanoTime() - borrowedAt;
+        returnCount.incrementAndGet();
+        holdNanos.addAndGet(held);
+        maxHoldNanos.accumulateAndGet(held, Math::max);
+
+        boolean reusable = !closed;
+        if (reusable) {
+            // Dejamos la conexión como la encontramos el siguiente usuario
+            try {
+                if (entry.connection.isClosed()) {
+                    reusable = false;
+                } else if (!entry.connection.getAutoCommit()) {
+                    entry.connection.rollback();
+                    entry.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        if (reusable) {
+            entry.lastUsed = System.currentTimeMillis();
+            synchronized (idle) {
+                idle.addFirst(entry);
+            }
+        } else {
+            discard(entry);
+        }
+        permits.release();
+    }
+
+    private void discard(PooledEntry entry) {
+        totalConnections.decrementAndGet();
+        entry.statements.closeAll();
+        try {
+            entry.connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar conexión del pool: " + e.getMessage());
+        }
+    }
+
+    /** Cierra las conexiones ociosas que superan el tiempo límite, respetando el mínimo. */
+    private void evictIdle() {
+        long limit = System.currentTimeMillis() - idleTimeoutMs;
+        while (true) {
+            PooledEntry victim = null;
+            synchronized (idle) {
+                // Las más antiguas quedan al final de la cola
+                PooledEntry oldest = idle.peekLast();
+                if (oldest != null && oldest.lastUsed < limit && totalConnections.get() > minSize) {
+                    victim = idle.pollLast();
+                }
+            }
+            if (victim == null) break;
+            evictedCount.incrementAndGet();
+            discard(victim);
+        }
+    }
+
+    private void closeIdle() {
+        while (true) {
+            PooledEntry entry;
+            synchronized (idle) {
+                entry = idle.pollFirst();
+            }
+            if (entry == null) break;
+            discard(entry);
+        }
+    }
+
+    /** Cierra las conexiones libres; las prestadas se cierran al devolverse. */
+    public void close() {
+        closed = true;
+        if (evictor != null) evictor.shutdownNow();
+        closeIdle();
+    }
+
+    public boolean isClosed() { return closed; }
+
+    public int getMinSize() { return minSize; }
+    public int getMaxSize() { return maxSize; }
+    public int getTotalConnections() { return totalConnections.get(); }
+    public int getActiveConnections() { return maxSize - permits.availablePermits(); }
+
+    public int getIdleConnections() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getValidationFailures() { return validationFailures.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+
+    /** Tiempo medio de espera para obtener una conexión, en milisegundos. */
+    public double getAverageBorrowWaitMs() {
+        long n = borrowCount.get();
+        return n == 0 ? 0 : borrowWaitNanos.get() / (n * 1_000_000.0);
+    }
+
+    public double getMaxBorrowWaitMs() { return maxBorrowWaitNanos.get() / 1_000_000.0; }
+
+    /** Tiempo medio que una conexión permanece prestada, en milisegundos. */
+    public double getAverageHoldMs() {
+        long n = returnCount.get();
+        return n == 0 ? 0 : holdNanos.get() / (n * 1_000_000.0);
+    }
+
+    public double getMaxHoldMs() { return maxHoldNanos.get() / 1_000_000.0; }
+
+    public long getStatementCacheHits() { return statementStats.hits.get(); }
+    public long getStatementCacheMisses() { return statementStats.misses.get(); }
+    public long getStatementCacheEvictions() { return statementStats.evictions.get(); }
+
+    /** Porcentaje de aciertos de la caché de PreparedStatement (0 a 100). */
+    public double getStatementCacheHitRatio() {
+        long hits = getStatementCacheHits();
+        long total = hits + getStatementCacheMisses();
+        return total == 0 ? 0 : hits * 100.0 / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool{activas=%d, libres=%d, total=%d/%d, préstamos=%d, espera media=%.2f ms, uso medio=%.2f ms, statements: %d aciertos / %d fallos}",
+                getActiveConnections(), getIdleConnections(), getTotalConnections(), maxSize,
+                getBorrowCount(), getAverageBorrowWaitMs(), getAverageHoldMs(),
+                getStatementCacheHits(), getStatementCacheMisses());
+    }
+
+    private static final class PooledEntry {
+        final Connection connection;
+        final StatementCache statements;
+        volatile long lastUsed;
+
+        PooledEntry(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Préstamo de una conexión del pool. Al cerrarlo la conexión vuelve al pool
+     * (no se cierra la conexión física).
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledEntry entry;
+        private final long borrowedAt = System.nanoTime();
+        private boolean returned;
+
+        private Lease(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        public Connection connection() {
+            if (returned) throw new IllegalStateException("La conexión ya fue devuelta al pool");
+            return entry.connection;
+        }
+
+        /**
+         * PreparedStatement de la caché de esta conexión para la forma de consulta dada.
+         * El SQL solo se construye si no estaba en caché. No se debe cerrar el statement.
+         */
+        public PreparedStatement prepare(String table, String operation, List<String> columns,
+                                         Supplier<String> sql) throws SQLException {
+            return entry.statements.prepare(connection(), new StatementCache.Key(table, operation, columns), sql);
+        }
+
+        @Override
+        public void close() {
+            if (returned) return;
+            returned = true;
+            giveBack(entry, borrowedAt);
+        }
+    }
+}
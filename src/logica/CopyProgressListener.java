@@ -0,0 +1,12 @@
+package logica;
+
+/**
+ * Avance de una operación COPY (importación o exportación).
+ * Se invoca en el hilo que ejecuta la copia, no en el de JavaFX, y con una
+ * frecuencia limitada para no saturar la interfaz.
+ */
+public interface CopyProgressListener {
+
+    /** Filas procesadas y bytes leídos o escritos hasta el momento. */
+    void onProgress(long rows, long bytes);
+}
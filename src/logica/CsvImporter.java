@@ -0,0 +1,325 @@
+package logica;
+
+import modelo.ColumnInfo;
+import modelo.TableSchema;
+import modelo.TypeCodec;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Importa un archivo CSV/TSV a una tabla con COPY ... FROM STDIN.
+ * La primera línea del archivo debe tener los nombres de las columnas, que se
+ * asocian (sin distinguir mayúsculas) con las de la tabla. Cada valor con tipo se
+ * convierte con el {@link modelo.TypeCodec} de su columna; las filas inválidas se
+ * descartan y se informan, y las válidas viajan al servidor en un único COPY con
+ * el valor convertido (no el texto original), así el servidor recibe lo que se validó.
+ */
+public class CsvImporter {
+    // Máximo de errores que se guardan con detalle; el resto solo se cuenta
+    public static final int MAX_REPORTED_ERRORS = 100;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 200;
+
+    public static final class Result {
+        private final long imported;
+        private final long rejected;
+        private final List<String> errors;
+
+        Result(long imported, long rejected, List<String> errors) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public long getImported() { return imported; }
+        public long getRejected() { return rejected; }
+        /** Detalle de las primeras filas rechazadas ("línea N: motivo"). */
+        public List<String> getErrors() { return errors; }
+    }
+
+    private final TableSchema schema;
+    private final char delimiter;
+
+    public CsvImporter(TableSchema schema, char delimiter) {
+        this.schema = schema;
+        this.delimiter = delimiter;
+    }
+
+    /** Separador según la extensión: tabulador para .tsv/.tab, coma para el resto. */
+    public static char delimiterFor(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".tsv") || name.endsWith(".tab") ? '\t' : ',';
+    }
+
+    /** Ejecuta la importación en la conexión dada. Si se cancela, el COPY se aborta y no queda nada insertado. */
+    public Result run(Connection conn, Path file, CopyProgressListener listener, CancelToken token)
+            throws SQLException, IOException {
+        CountingInputStream counter = new CountingInputStream(Files.newInputStream(file));
+        try (CsvReader reader = new CsvReader(new InputStreamReader(counter, StandardCharsets.UTF_8), delimiter)) {
+            List<String> fields = new ArrayList<>();
+            if (!reader.next(fields)) {
+                throw new IOException("El archivo está vacío");
+            }
+            ColumnInfo[] columns = mapHeader(fields);
+
+            CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql(columns));
+            long rejected = 0;
+            List<String> errors = new ArrayList<>();
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        new PGCopyOutputStream(copyIn, COPY_BUFFER_SIZE), StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+                StringBuilder line = new StringBuilder(256);
+                String[] values = new String[columns.length];
+                long rows = 0;
+                long lastReport = System.currentTimeMillis();
+                while (reader.next(fields)) {
+                    long lineNumber = reader.getRecordNumber();
+                    String error = convert(fields, columns, values);
+                    if (error != null) {
+                        rejected++;
+                        if (errors.size() < MAX_REPORTED_ERRORS) errors.add("línea " + lineNumber + ": " + error);
+                    } else {
+                        line.setLength(0);
+                        appendCsv(line, values);
+                        out.write(line.toString());
+                    }
+
+                    // La comprobación de cancelación y de avance no hace falta en cada fila
+                    if ((++rows & 1023) == 0) {
+                        if (token != null) token.throwIfCancelled();
+                        long now = System.currentTimeMillis();
+                        if (listener != null && now - lastReport >= PROGRESS_INTERVAL_MS) {
+                            listener.onProgress(rows, counter.count);
+                            lastReport = now;
+                        }
+                    }
+                }
+                if (token != null) token.throwIfCancelled();
+                out.flush();
+                long imported = copyIn.endCopy();
+                if (listener != null) listener.onProgress(rows, counter.count);
+                return new Result(imported, rejected, errors);
+            } finally {
+                if (copyIn.isActive()) {
+                    try {
+                        copyIn.cancelCopy();
+                    } catch (SQLException e) {
+                        System.err.println("Error al cancelar COPY: " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    // Asocia cada columna del archivo con la de la tabla del mismo nombre
+    private ColumnInfo[] mapHeader(List<String> header) throws IOException {
+        ColumnInfo[] columns = new ColumnInfo[header.size()];
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i) == null ? "" : header.get(i).trim();
+            for (ColumnInfo col : schema.getColumns()) {
+                if (col.getName().equalsIgnoreCase(name)) {
+                    columns[i] = col;
+                    break;
+                }
+            }
+            if (columns[i] == null) {
+                throw new IOException("La columna \"" + name + "\" del archivo no existe en " + schema.getTableName());
+            }
+        }
+        return columns;
+    }
+
+    private String copySql(ColumnInfo[] columns) {
+        StringBuilder sql = new StringBuilder("COPY ").append(schema.getTableName()).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(columns[i].getName());
+        }
+        return sql.append(") FROM STDIN WITH (FORMAT csv)").toString();
+    }
+
+    /*
+     * Convierte cada campo con el codec de su columna y deja en values el texto que se
+     * enviará, escrito por el propio codec (null para NULL). Así "sí", "1.5d" o una
+     * fecha con T llegan al servidor en la forma que él acepta. El texto y los tipos sin
+     * codec propio pasan tal cual: el codec tomaría "" o un campo en blanco por NULL, y
+     * solo el campo vacío sin comillas lo es (el lector ya lo deja en null). Devuelve el
+     * error o null.
+     */
+    private static String convert(List<String> fields, ColumnInfo[] columns, String[] values) {
+        if (fields.size() != columns.length) {
+            return "se esperaban " + columns.length + " campos y hay " + fields.size();
+        }
+        for (int i = 0; i < columns.length; i++) {
+            TypeCodec codec = columns[i].getCodec();
+            String field = fields.get(i);
+            if (field == null || codec.getCategory() == TypeCodec.Category.TEXT
+                    || codec.getCategory() == TypeCodec.Category.OTHER) {
+                values[i] = field;
+                continue;
+            }
+            try {
+                Object value = codec.parse(field);
+                values[i] = value == null ? null : codec.format(value);
+            } catch (IllegalArgumentException e) {
+                return columns[i].getName() + ": " + e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Se reescribe cada fila en CSV estándar (coma y comillas dobles), sea cual sea el
+     * separador de origen. Un campo null va vacío sin comillas, que COPY lee como NULL;
+     * una cadena vacía va entre comillas para no confundirla con NULL.
+     */
+    private static void appendCsv(StringBuilder line, String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) line.append(',');
+            String value = values[i];
+            if (value == null) continue;
+            if (value.isEmpty() || needsQuotes(value)) {
+                line.append('"');
+                for (int c = 0; c < value.length(); c++) {
+                    char ch = value.charAt(c);
+                    if (ch == '"') line.append('"');
+                    line.append(ch);
+                }
+                line.append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        line.append('\n');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int c = 0; c < value.length(); c++) {
+            char ch = value.charAt(c);
+            // La barra también: "\." sin comillas en una línea marca el fin de datos en COPY
+            if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r' || ch == '\\') return true;
+        }
+        return false;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /**
+     * Lector CSV mínimo: campos entre comillas dobles (con "" como comilla escapada y
+     * saltos de línea dentro), separador configurable y finales de línea LF o CRLF.
+     * Un campo vacío sin comillas se devuelve como null.
+     */
+    static final class CsvReader implements Closeable {
+        private final Reader in;
+        private final char delimiter;
+        private final char[] buffer = new char[64 * 1024];
+        private int pos;
+        private int limit;
+        private long recordNumber;
+        private final StringBuilder field = new StringBuilder();
+
+        CsvReader(Reader in, char delimiter) {
+            this.in = in;
+            this.delimiter = delimiter;
+        }
+
+        /** Número (desde 1) del último registro leído, contando la cabecera. */
+        long getRecordNumber() { return recordNumber; }
+
+        /** Lee el siguiente registro en fields; devuelve false al final del archivo. */
+        boolean next(List<String> fields) throws IOException {
+            fields.clear();
+            int c = read();
+            if (c < 0) return false;
+            // Líneas vacías sueltas no son registros
+            while (c == '\n' || c == '\r') {
+                c = read();
+                if (c < 0) return false;
+            }
+            recordNumber++;
+
+            while (true) {
+                field.setLength(0);
+                boolean quoted = false;
+                if (c == '"') {
+                    quoted = true;
+                    while (true) {
+                        c = read();
+                        if (c < 0) throw new IOException("Comillas sin cerrar en el registro " + recordNumber);
+                        if (c == '"') {
+                            c = read();
+                            if (c != '"') break;
+                        }
+                        field.append((char) c);
+                    }
+                } else {
+                    while (c >= 0 && c != delimiter && c != '\n' && c != '\r') {
+                        field.append((char) c);
+                        c = read();
+                    }
+                }
+                fields.add(quoted || field.length() > 0 ? field.toString() : null);
+
+                if (c == delimiter) {
+                    c = read();
+                    continue;
+                }
+                if (c == '\r') {
+                    c = read();
+                    if (c != '\n' && c >= 0) pos--;
+                } else if (c >= 0 && c != '\n') {
+                    throw new IOException("Carácter inesperado tras comillas en el registro " + recordNumber);
+                }
+                return true;
+            }
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[pos++];
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
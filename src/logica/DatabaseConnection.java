@@ -2,14 +2,43 @@ package logica;
 
 import modelo.DatabaseConfig;
 import modelo.ColumnInfo;
+import modelo.IndexInfo;
 import modelo.TableData;
+import modelo.TableSchema;
+import modelo.TypeCodec;
 
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DatabaseConnection {
-    private Connection connection;
-    private final Map<String, TableData> structureCache = new HashMap<>();
+    // Cada operación toma prestada su propia conexión, así varias ventanas pueden trabajar a la vez
+    private volatile ConnectionPool pool;
+    // Filas que el servidor envía por cada viaje al leer en streaming (y tamaño de cada bloque)
+    public static final int DEFAULT_FETCH_SIZE = 500;
+    // Esquemas leídos tabla a tabla (inmutables); se descartan los menos usados al superar el límite
+    public static final int MAX_CACHED_SCHEMAS = 4096;
+    private final Map<String, TableSchema> structureCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TableSchema> eldest) {
+                    return size() > MAX_CACHED_SCHEMAS;
+                }
+            });
+    // Esquemas de preloadCatalog: son todo el catálogo, así que no se limitan ni se descartan
+    private final Map<String, TableSchema> catalogCache = new ConcurrentHashMap<>();
+    // Nombres de tabla leídos del catálogo; null hasta que termina preloadCatalog
+    private volatile String[] catalogTables;
+    private volatile DatabaseConfig currentConfig;
+    private final SchemaDiskCache diskCache = new SchemaDiskCache();
+    // Sondeo de cambios compartido por todas las ventanas de esta conexión
+    private TableChangeMonitor changeMonitor;
+    // Escucha de LISTEN/NOTIFY, con su propia conexión fuera del pool
+    private ChangeFeed changeFeed;
 
     public DatabaseConnection() {
         try {
@@ -21,9 +50,14 @@ public class DatabaseConnection {
 
     public boolean connect(DatabaseConfig config) {
         try {
-            String url = config.getConnectionUrl();
-            connection = DriverManager.getConnection(url, config.getUsername(), config.getPassword());
+            ConnectionPool newPool = new ConnectionPool(config);
+            ConnectionPool old = pool;
+            pool = newPool;
+            if (old != null) old.close();
             structureCache.clear();
+            catalogCache.clear();
+            catalogTables = null;
+            currentConfig = config.copy();
             return true;
         } catch (SQLException e) {
             System.err.println("Error de conexión: " + e.getMessage());
@@ -32,27 +66,107 @@ public class DatabaseConnection {
     }
 
     public void disconnect() {
-        if (connection != null) {
+        ConnectionPool old = pool;
+        pool = null;
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    public boolean isConnected() {
+        ConnectionPool p = pool;
+        return p != null && !p.isClosed();
+    }
+
+    public synchronized TableChangeMonitor getChangeMonitor() {
+        if (changeMonitor == null) {
+            changeMonitor = new TableChangeMonitor(this, TableChangeMonitor.DEFAULT_INTERVAL_MS);
+        }
+        return changeMonitor;
+    }
+
+    public synchronized ChangeFeed getChangeFeed() {
+        if (changeFeed == null) {
+            changeFeed = new ChangeFeed(this);
+        }
+        return changeFeed;
+    }
+
+    /**
+     * Conexión propia, fuera del pool, para quien la mantiene abierta todo el tiempo
+     * (la escucha de avisos). La cierra quien la pide.
+     */
+    Connection openDedicatedConnection() throws SQLException {
+        DatabaseConfig config = currentConfig;
+        if (config == null || !isConnected()) throw new SQLException("No hay conexión con la base de datos");
+        return DriverManager.getConnection(config.getConnectionUrl(), config.getUsername(), config.getPassword());
+    }
+
+    /** Indica si la tabla ya tiene el trigger que publica sus cambios (ver {@link ChangeFeed}). */
+    public boolean hasChangeTrigger(String tableName) throws SQLException {
+        if (!isConnected()) return false;
+        try (ConnectionPool.Lease lease = borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(
+                     "SELECT 1 FROM pg_catalog.pg_trigger WHERE tgrelid = to_regclass(?) AND tgname = ?")) {
+            pstmt.setString(1, tableName);
+            pstmt.setString(2, ChangeFeed.TRIGGER);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /** Instala (o reinstala) el trigger de avisos en la tabla, en una sola transacción. */
+    public void installChangeTrigger(String tableName) throws SQLException {
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+        TableSchema schema = loadTableStructure(tableName);
+        if (!schema.hasPrimaryKey()) {
+            throw new SQLException("La tabla " + tableName + " no tiene clave primaria");
+        }
+        try (ConnectionPool.Lease lease = borrow();
+             Statement stmt = lease.connection().createStatement()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
             try {
-                connection.close();
+                for (String ddl : ChangeFeed.triggerStatements(schema)) {
+                    stmt.execute(ddl);
+                }
+                conn.commit();
             } catch (SQLException e) {
-                System.err.println("Error al cerrar conexión: " + e.getMessage());
+                rollbackQuietly(conn, e);
+                throw e;
             }
         }
     }
 
-    public boolean isConnected() {
+    // Si también falla el rollback, su error se adjunta al original en lugar de ocultarlo
+    private static void rollbackQuietly(Connection conn, Exception cause) {
         try {
-            return connection != null && !connection.isClosed();
+            conn.rollback();
         } catch (SQLException e) {
-            return false;
+            cause.addSuppressed(e);
         }
     }
 
+    /** Pool activo, útil para consultar sus estadísticas de préstamo y de la caché de statements. */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    private ConnectionPool.Lease borrow() throws SQLException {
+        ConnectionPool p = pool;
+        if (p == null) throw new SQLException("No hay conexión activa");
+        return p.borrow();
+    }
+
     public String[] getTables() {
+        String[] fromCatalog = catalogTables;
+        if (fromCatalog != null) return fromCatalog.clone();
+
         List<String> tables = new ArrayList<>();
         if (!isConnected()) return new String[0];
-        try (ResultSet rs = connection.getMetaData().getTables(null, null, "%", new String[]{"TABLE"})) {
+        try (ConnectionPool.Lease lease = borrow();
+             ResultSet rs = lease.connection().getMetaData().getTables(null, null, "%", new String[]{"TABLE"})) {
             while (rs.next()) {
                 tables.add(rs.getString("TABLE_NAME"));
             }
@@ -62,16 +176,53 @@ public class DatabaseConnection {
         return tables.toArray(new String[0]);
     }
 
-    public TableData loadTableStructure(String tableName) {
-        if (structureCache.containsKey(tableName)) {
-            return structureCache.get(tableName);
+    /**
+     * Carga de una vez la estructura de todas las tablas (columnas, PK, defaults,
+     * identidad, índices y FKs) y llena la caché de esquemas. Pensado para lanzarse en
+     * segundo plano al conectar; después loadTableStructure y getTables no consultan al servidor.
+     * Si la caché en disco del perfil coincide con la huella actual del catálogo, se usa
+     * esa copia en lugar de repetir la introspección. Devuelve los nombres de las tablas.
+     */
+    public String[] preloadCatalog(CancelToken token) throws SQLException {
+        ConnectionPool source = pool;
+        DatabaseConfig config = currentConfig;
+        Map<String, TableSchema> schemas;
+        try (ConnectionPool.Lease lease = borrow()) {
+            String fingerprint = diskCache.fingerprint(lease.connection());
+            schemas = diskCache.load(config, fingerprint);
+            if (schemas == null) {
+                schemas = new CatalogLoader().loadAll(lease.connection(), token);
+                diskCache.save(config, fingerprint, schemas);
+            }
         }
+        // Si entretanto se conectó a otra base, este catálogo ya no sirve
+        if (pool != source) throw new SQLException("La conexión cambió durante la carga del catálogo");
+        catalogCache.putAll(schemas);
+        String[] names = schemas.keySet().toArray(new String[0]);
+        catalogTables = names;
+        return names.clone();
+    }
 
-        TableData tableData = new TableData();
-        if (!isConnected()) return tableData;
+    /**
+     * Devuelve la estructura de la tabla desde la caché o, la primera vez, desde los metadatos.
+     * El esquema es inmutable y compartido: los datos de cada consulta van en un TableData nuevo.
+     */
+    public TableSchema loadTableStructure(String tableName) {
+        TableSchema cached = cachedSchema(tableName);
+        if (cached != null) {
+            return cached;
+        }
 
-        try {
-            DatabaseMetaData meta = connection.getMetaData();
+        List<ColumnInfo> columns = new ArrayList<>();
+        List<IndexInfo> indexes = new ArrayList<>();
+        long estimatedRows = -1;
+        if (!isConnected()) return new TableSchema(tableName, columns);
+
+        try (ConnectionPool.Lease lease = borrow()) {
+            DatabaseMetaData meta = lease.connection().getMetaData();
+            // Con el OID de cada tipo el codec de la columna no depende de su nombre
+            org.postgresql.core.TypeInfo typeInfo =
+                    lease.connection().unwrap(org.postgresql.core.BaseConnection.class).getTypeInfo();
             Set<String> pkColumns = new HashSet<>();
             try (ResultSet pkRs = meta.getPrimaryKeys(null, null, tableName)) {
                 while (pkRs.next()) {
@@ -88,148 +239,745 @@ public class DatabaseConnection {
                     try {
                         isAuto = "YES".equalsIgnoreCase(colRs.getString("IS_AUTOINCREMENT"));
                     } catch (SQLException ignored) {}
+                    String def = colRs.getString("COLUMN_DEF");
                     if (!isAuto) {
-                        String def = colRs.getString("COLUMN_DEF");
                         if (def != null && def.toLowerCase().contains("nextval")) {
                             isAuto = true;
                         }
                     }
-                    tableData.addColumn(new ColumnInfo(name, type, isPk, isAuto));
+                    columns.add(new ColumnInfo(name, type, isPk, isAuto,
+                            colRs.getInt("DATA_TYPE"), colRs.getInt("COLUMN_SIZE"), def, typeInfo.getPGType(type)));
                 }
             }
-            structureCache.put(tableName, tableData);
+
+            // Los índices (para elegir la forma de las búsquedas) salen de pg_indexes
+            indexes.addAll(readIndexes(lease.connection(), tableName, pkColumns));
+            estimatedRows = readEstimatedRows(lease.connection(), tableName);
         } catch (SQLException e) {
             System.err.println("Error al cargar estructura: " + e.getMessage());
+            // No se guarda en caché una estructura incompleta
+            return new TableSchema(tableName, columns);
         }
-        return tableData;
+        TableSchema schema = new TableSchema(tableName, columns, indexes, Collections.emptyList(), estimatedRows);
+        if (!columns.isEmpty()) {
+            structureCache.put(tableName, schema);
+        }
+        return schema;
     }
 
-    public String getColumnType(String tableName, String columnName) {
-        TableData td = loadTableStructure(tableName);
-        for (ColumnInfo col : td.getColumns()) {
-            if (col.getName().equals(columnName)) return col.getType();
+    private static final String INDEXES_SQL =
+            "SELECT indexname, indexdef FROM pg_catalog.pg_indexes"
+            + " WHERE tablename = ? AND schemaname = ANY(current_schemas(false))";
+
+    private static List<IndexInfo> readIndexes(Connection conn, String tableName, Set<String> pkColumns)
+            throws SQLException {
+        List<IndexInfo> indexes = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(INDEXES_SQL)) {
+            stmt.setString(1, tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    indexes.add(indexFromDefinition(rs.getString(1), rs.getString(2), pkColumns));
+                }
+            }
         }
-        return null;
+        return indexes;
     }
 
-    public static Object parseValue(String value, String sqlTypeName) {
-        if (value == null || value.trim().isEmpty()) return null;
-        String upper = sqlTypeName.toUpperCase();
-        try {
-            if (upper.contains("INT") || upper.contains("SERIAL")) {
-                return Long.parseLong(value);
-            } else if (upper.contains("BOOL")) {
-                return Boolean.parseBoolean(value);
-            } else if (upper.contains("UUID")) {
-                return UUID.fromString(value);
-            } else if (upper.contains("DATE")) {
-                return java.sql.Date.valueOf(value);
-            } else if (upper.contains("TIMESTAMP")) {
-                return java.sql.Timestamp.valueOf(value);
-            } else if (upper.contains("DECIMAL") || upper.contains("NUMERIC") || upper.contains("DOUBLE") || upper.contains("FLOAT")) {
-                return new java.math.BigDecimal(value);
-            } else {
-                return value;
+    // Estimación del planificador; -1 si la tabla nunca se ha analizado
+    private static long readEstimatedRows(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT reltuples::bigint FROM pg_catalog.pg_class WHERE oid = to_regclass(?)")) {
+            stmt.setString(1, tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Math.max(rs.getLong(1), -1) : -1;
             }
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Valor inválido para tipo " + sqlTypeName + ": " + value, e);
         }
     }
 
+    // Columnas y método a partir del texto de pg_indexes; las expresiones quedan como ""
+    private static IndexInfo indexFromDefinition(String name, String definition, Set<String> pkColumns) {
+        int using = definition.indexOf(" USING ");
+        String method = using < 0 ? "btree" : definition.substring(using + 7, definition.indexOf(' ', using + 7));
+        List<String> cols = new ArrayList<>();
+        for (String element : SearchEngine.keyElements(definition)) {
+            String first = element.split(" ")[0].replace("\"", "");
+            cols.add(first.matches("[A-Za-z_][A-Za-z0-9_$]*") ? first : "");
+        }
+        boolean unique = definition.startsWith("CREATE UNIQUE");
+        boolean primary = unique && !pkColumns.isEmpty() && new HashSet<>(cols).equals(pkColumns);
+        return new IndexInfo(name, cols, method, unique, primary, definition);
+    }
+
+    public String getColumnType(String tableName, String columnName) {
+        TableSchema schema = loadTableStructure(tableName);
+        int i = schema.indexOf(columnName);
+        return i < 0 ? null : schema.getColumn(i).getType();
+    }
+
     public TableData loadTableData(String tableName) {
-        TableData tableData = loadTableStructure(tableName);
+        return loadTableData(tableName, null);
+    }
+
+    /** Igual que {@link #loadTableData(String)}, pero cancelable desde otro hilo con el token. */
+    public TableData loadTableData(String tableName, CancelToken token) {
+        TableData tableData = new TableData(loadTableStructure(tableName));
         if (!isConnected()) return tableData;
 
         String sql = "SELECT * FROM " + tableName + " LIMIT 100";
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                ArrayList<Object> row = new ArrayList<>();
-                for (int i = 1; i <= tableData.getColumnCount(); i++) {
-                    row.add(rs.getObject(i));
-                }
-                tableData.addRow(row);
+        try (ConnectionPool.Lease lease = borrow();
+             Statement stmt = lease.connection().createStatement()) {
+            track(token, stmt);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                readRows(rs, tableData);
+            } finally {
+                untrack(token, stmt);
             }
         } catch (SQLException e) {
-            System.err.println("Error al cargar datos: " + e.getMessage());
+            logError("Error al cargar datos", e, token);
         }
         return tableData;
     }
 
-    public TableData loadRowByPk(String tableName, String pkColumn, Object pkValue) {
-        TableData tableData = loadTableStructure(tableName);
-        if (!isConnected()) return tableData;
+    /**
+     * Lee una página usando paginación por clave (keyset) sobre la clave primaria:
+     * {@code WHERE pk > ? ORDER BY pk LIMIT n}. Con {@code afterKey} nulo devuelve la primera página.
+     * El coste es el mismo en cualquier punto de la tabla porque usa el índice de la PK.
+     * Devuelve un resultado nuevo, independiente de la estructura en caché.
+     */
+    public TableData loadPage(String tableName, Object[] afterKey, int limit, CancelToken token)
+            throws SQLException {
+        TableSchema structure = loadTableStructure(tableName);
+        TableData page = new TableData(structure);
+        if (!isConnected()) return page;
 
-        String sql = "SELECT * FROM " + tableName + " WHERE " + pkColumn + " = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setObject(1, pkValue);
+        int[] pk = structure.getPrimaryKeyIndices();
+        if (pk.length == 0) {
+            throw new IllegalStateException("La tabla " + tableName + " no tiene clave primaria");
+        }
+        String operation = (afterKey == null ? "PAGE_FIRST:" : "PAGE_AFTER:") + limit;
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = lease.prepare(tableName, operation, Collections.emptyList(), () -> {
+                String keyList = keyColumnList(structure, pk);
+                StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName);
+                if (afterKey != null) {
+                    // Comparación de filas para soportar también claves compuestas
+                    sql.append(" WHERE (").append(keyList).append(") > (");
+                    for (int i = 0; i < pk.length; i++) {
+                        sql.append(i > 0 ? ", ?" : "?");
+                    }
+                    sql.append(")");
+                }
+                return sql.append(" ORDER BY ").append(keyList).append(" LIMIT ").append(limit).toString();
+            });
+            if (afterKey != null) {
+                for (int i = 0; i < afterKey.length; i++) {
+                    pstmt.setObject(i + 1, afterKey[i]);
+                }
+            }
+            track(token, pstmt);
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    ArrayList<Object> row = new ArrayList<>();
-                    for (int i = 1; i <= tableData.getColumnCount(); i++) {
-                        row.add(rs.getObject(i));
+                readRows(rs, page);
+            } finally {
+                untrack(token, pstmt);
+            }
+        } catch (SQLException e) {
+            rethrowUnlessCancelled(e, token);
+        }
+        return page;
+    }
+
+    /**
+     * Página de una tabla ordenada por una columna, con paginación por clave sobre
+     * {@code (columna, pk)}. Los nulos se leen en un tramo aparte ({@code nulls}):
+     * en orden ascendente van al final y en descendente al principio, igual que en
+     * PostgreSQL, y así cada consulta puede recorrer el índice de la columna.
+     * {@code afterValue}/{@code afterKey} son la columna y la PK de la última fila leída
+     * en el tramo; con {@code afterKey} nulo se lee la primera página del tramo.
+     */
+    public TableData loadSortedPage(String tableName, SortKey sort, boolean nulls, Object afterValue,
+                                    Object[] afterKey, int limit, CancelToken token) throws SQLException {
+        TableSchema structure = loadTableStructure(tableName);
+        TableData page = new TableData(structure);
+        if (!isConnected()) return page;
+
+        int[] pk = structure.getPrimaryKeyIndices();
+        if (pk.length == 0) {
+            throw new IllegalStateException("La tabla " + tableName + " no tiene clave primaria");
+        }
+        String column = sort.getColumn();
+        String operation = "SORT_" + sort.direction() + (nulls ? "_NULLS" : "")
+                + (afterKey == null ? "_FIRST:" : "_AFTER:") + limit;
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = lease.prepare(tableName, operation, Collections.singletonList(column), () -> {
+                String dir = " " + sort.direction();
+                String cmp = sort.isAscending() ? " > " : " < ";
+                StringBuilder keyOrder = new StringBuilder();
+                for (int i = 0; i < pk.length; i++) {
+                    if (i > 0) keyOrder.append(", ");
+                    keyOrder.append(structure.getColumnName(pk[i])).append(dir);
+                }
+                String keyList = keyColumnList(structure, pk);
+                StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName).append(" WHERE ");
+                if (nulls) {
+                    sql.append(column).append(" IS NULL");
+                    if (afterKey != null) {
+                        sql.append(" AND (").append(keyList).append(")").append(cmp).append("(")
+                                .append(placeholders(pk.length)).append(")");
                     }
-                    tableData.addRow(row);
+                    sql.append(" ORDER BY ").append(keyOrder);
+                } else {
+                    if (afterKey == null) {
+                        sql.append(column).append(" IS NOT NULL");
+                    } else {
+                        // Una fila con la columna nula nunca cumple la comparación, así que
+                        // este tramo no necesita excluirlas aparte
+                        sql.append("(").append(column).append(", ").append(keyList).append(")").append(cmp)
+                                .append("(").append(placeholders(pk.length + 1)).append(")");
+                    }
+                    sql.append(" ORDER BY ").append(column).append(dir).append(", ").append(keyOrder);
+                }
+                return sql.append(" LIMIT ").append(limit).toString();
+            });
+            if (afterKey != null) {
+                int p = 1;
+                if (!nulls) {
+                    pstmt.setObject(p++, afterValue);
+                }
+                for (Object keyValue : afterKey) {
+                    pstmt.setObject(p++, keyValue);
                 }
             }
+            track(token, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                readRows(rs, page);
+            } finally {
+                untrack(token, pstmt);
+            }
         } catch (SQLException e) {
-            System.err.println("Error al leer por PK: " + e.getMessage());
+            rethrowUnlessCancelled(e, token);
         }
-        return tableData;
+        return page;
     }
 
-    public boolean insertRecord(String tableName, ArrayList<Object> values, ArrayList<String> columns) {
-        if (!isConnected()) return false;
-        StringBuilder query = new StringBuilder("INSERT INTO " + tableName + " (");
-        StringBuilder placeholders = new StringBuilder("VALUES (");
-        for (int i = 0; i < columns.size(); i++) {
-            if (i > 0) {
-                query.append(", ");
-                placeholders.append(", ");
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i > 0 ? ", ?" : "?");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Alternativa para tablas sin clave primaria: {@code LIMIT n OFFSET m}.
+     * Es correcta pero su coste crece con el desplazamiento.
+     */
+    public TableData loadPageAt(String tableName, long offset, int limit, CancelToken token) throws SQLException {
+        return loadPageAt(tableName, null, offset, limit, token);
+    }
+
+    /** Como {@link #loadPageAt(String, long, int, CancelToken)}, ordenando por {@code sort} si no es nulo. */
+    public TableData loadPageAt(String tableName, SortKey sort, long offset, int limit, CancelToken token)
+            throws SQLException {
+        TableSchema structure = loadTableStructure(tableName);
+        TableData page = new TableData(structure);
+        if (!isConnected()) return page;
+
+        String sql = "SELECT * FROM " + tableName
+                + (sort != null ? " ORDER BY " + sort.getColumn() + " " + sort.direction() : "")
+                + " LIMIT " + limit + " OFFSET " + offset;
+        try (ConnectionPool.Lease lease = borrow();
+             Statement stmt = lease.connection().createStatement()) {
+            track(token, stmt);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                readRows(rs, page);
+            } finally {
+                untrack(token, stmt);
             }
-            query.append(columns.get(i));
-            placeholders.append("?");
+        } catch (SQLException e) {
+            rethrowUnlessCancelled(e, token);
+        }
+        return page;
+    }
+
+    /**
+     * Lee toda la tabla en streaming, entregando bloques de filas al listener.
+     * Devuelve el número total de filas leídas.
+     */
+    public long streamTable(String tableName, RowStreamListener listener, CancelToken token) throws SQLException {
+        return streamQuery(tableName, "SELECT * FROM " + tableName, Collections.emptyList(),
+                DEFAULT_FETCH_SIZE, listener, token);
+    }
+
+    /**
+     * Busca en streaming con una condición de {@link SearchEngine}, hasta {@code maxRows}
+     * filas (0 = sin límite).
+     */
+    public long streamSearch(String tableName, SearchEngine.Predicate predicate, int maxRows,
+                             RowStreamListener listener, CancelToken token) throws SQLException {
+        String sql = "SELECT * FROM " + tableName + " WHERE " + predicate.toSql()
+                + (maxRows > 0 ? " LIMIT " + maxRows : "");
+        return streamQuery(tableName, sql, predicate.getParams(), DEFAULT_FETCH_SIZE, listener, token);
+    }
+
+    /** Construye la condición de búsqueda para la columna según su tipo y los índices de la tabla. */
+    public SearchEngine.Predicate buildSearch(String tableName, String searchColumn, String searchValue) {
+        return new SearchEngine().build(loadTableStructure(tableName), searchColumn, searchValue);
+    }
+
+    /**
+     * Condición de búsqueda en el modo indicado. Los modos de texto completo y similitud
+     * admiten varias columnas; el modo por tipo usa solo la primera.
+     */
+    public SearchEngine.Predicate buildSearch(String tableName, SearchEngine.Mode mode,
+                                              List<String> columns, String searchValue) {
+        TableSchema schema = loadTableStructure(tableName);
+        SearchEngine engine = new SearchEngine();
+        switch (mode) {
+            case FULL_TEXT:
+                return engine.buildFullText(schema, columns, searchValue);
+            case TRIGRAM:
+                return engine.buildTrigram(schema, columns, searchValue);
+            default:
+                return engine.build(schema, columns.get(0), searchValue);
         }
-        query.append(") ").append(placeholders).append(")");
+    }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
-            for (int i = 0; i < values.size(); i++) {
-                pstmt.setObject(i + 1, values.get(i));
+    /**
+     * Crea los índices sugeridos por una búsqueda. Se crean con CONCURRENTLY para no
+     * bloquear las escrituras en la tabla; si la creación falla o se cancela se borra el
+     * índice a medias (queda marcado como inválido). Al terminar se relee la lista de índices.
+     */
+    public void createIndexes(String tableName, List<SearchEngine.IndexSuggestion> suggestions,
+                              CancelToken token) throws SQLException {
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+        try (ConnectionPool.Lease lease = borrow();
+             Statement stmt = lease.connection().createStatement()) {
+            for (SearchEngine.IndexSuggestion suggestion : suggestions) {
+                if (token != null) token.throwIfCancelled();
+                try {
+                    track(token, stmt);
+                    for (String ddl : suggestion.getStatements()) {
+                        stmt.execute(ddl);
+                    }
+                } catch (SQLException e) {
+                    try {
+                        stmt.execute("DROP INDEX CONCURRENTLY IF EXISTS " + suggestion.getName());
+                    } catch (SQLException dropError) {
+                        System.err.println("Error al borrar índice incompleto: " + dropError.getMessage());
+                    }
+                    throw e;
+                } finally {
+                    untrack(token, stmt);
+                }
+            }
+            refreshIndexes(lease.connection(), tableName);
+        }
+    }
+
+    private TableSchema cachedSchema(String tableName) {
+        TableSchema schema = catalogCache.get(tableName);
+        return schema != null ? schema : structureCache.get(tableName);
+    }
+
+    // Sustituye en la caché el esquema de la tabla por uno con los índices actuales
+    private void refreshIndexes(Connection conn, String tableName) throws SQLException {
+        TableSchema old = cachedSchema(tableName);
+        if (old == null) return;
+        Set<String> pkColumns = new HashSet<>();
+        for (int i : old.getPrimaryKeyIndices()) {
+            pkColumns.add(old.getColumnName(i));
+        }
+        TableSchema schema = new TableSchema(tableName, old.getColumns(),
+                readIndexes(conn, tableName, pkColumns), old.getForeignKeys(), old.getEstimatedRows());
+        if (catalogCache.containsKey(tableName)) {
+            catalogCache.put(tableName, schema);
+        } else {
+            structureCache.put(tableName, schema);
+        }
+    }
+
+    /**
+     * Ejecuta una consulta sobre {@code tableName} con un cursor del servidor: desactiva
+     * el autocommit y fija el fetch size, así el driver trae las filas por tandas en vez
+     * de cargar todo el resultado en memoria. El tiempo hasta la primera fila no depende
+     * del tamaño del resultado y la memoria del cliente queda acotada a un bloque.
+     * La consulta debe devolver las columnas de la tabla en su orden (SELECT *).
+     */
+    public long streamQuery(String tableName, String sql, List<Object> params, int fetchSize,
+                            RowStreamListener listener, CancelToken token) throws SQLException {
+        TableSchema structure = loadTableStructure(tableName);
+        if (!isConnected()) throw new SQLException("No hay conexión activa");
+
+        long total = 0;
+        // El pool deshace la transacción y restaura el autocommit al devolver la conexión
+        try (ConnectionPool.Lease lease = borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                pstmt.setFetchSize(fetchSize);
+                bindParams(conn, pstmt, params);
+                track(token, pstmt);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    TableData chunk = new TableData(structure);
+                    while (rs.next()) {
+                        chunk.readRow(rs);
+                        total++;
+                        if (chunk.getRowCount() >= fetchSize) {
+                            listener.onChunk(chunk);
+                            chunk = new TableData(structure);
+                        }
+                        if (token != null) token.throwIfCancelled();
+                    }
+                    if (chunk.getRowCount() > 0) {
+                        listener.onChunk(chunk);
+                    }
+                } finally {
+                    untrack(token, pstmt);
+                }
+            }
+        }
+        listener.onComplete(total);
+        return total;
+    }
+
+    private static String keyColumnList(TableSchema structure, int[] keyIndices) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keyIndices.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(structure.getColumnName(keyIndices[i]));
+        }
+        return sb.toString();
+    }
+
+    /** Resultado vacío con las columnas de la tabla, para ir llenándolo por bloques. */
+    public TableData emptyResult(String tableName) {
+        return new TableData(loadTableStructure(tableName));
+    }
+
+    private static void readRows(ResultSet rs, TableData target) throws SQLException {
+        while (rs.next()) {
+            target.readRow(rs);
+        }
+    }
+
+    public TableData loadRowByPk(String tableName, String pkColumn, Object pkValue) {
+        return loadRowByPk(tableName, pkColumn, pkValue, null);
+    }
+
+    /**
+     * Vuelve a leer las filas con las claves dadas ({@code WHERE (pk) IN ((?, ..), ..)}).
+     * Las que falten en el resultado ya no existen. Cada clave trae un valor por columna de la PK.
+     */
+    public TableData loadRowsByKey(String tableName, List<Object[]> keys, CancelToken token) {
+        TableSchema structure = loadTableStructure(tableName);
+        TableData rows = new TableData(structure);
+        if (!isConnected() || keys.isEmpty()) return rows;
+
+        int[] pk = structure.getPrimaryKeyIndices();
+        if (pk.length == 0) {
+            throw new IllegalStateException("La tabla " + tableName + " no tiene clave primaria");
+        }
+        String tuple = "(" + placeholders(pk.length) + ")";
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName)
+                .append(" WHERE (").append(keyColumnList(structure, pk)).append(") IN (");
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append(tuple);
+        }
+        sql.append(")");
+        // El número de claves varía en cada llamada: no se guarda en la caché de statements
+        try (ConnectionPool.Lease lease = borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Object[] key : keys) {
+                for (Object value : key) {
+                    // Las claves en texto (p. ej. las de los avisos) van sin tipo y el
+                    // servidor las convierte al de la columna
+                    if (value instanceof String) {
+                        pstmt.setObject(p++, value, Types.OTHER);
+                    } else {
+                        pstmt.setObject(p++, value);
+                    }
+                }
+            }
+            track(token, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                readRows(rs, rows);
+            } finally {
+                untrack(token, pstmt);
             }
-            return pstmt.executeUpdate() > 0;
         } catch (SQLException e) {
-            System.err.println("Error al insertar: " + e.getMessage());
-            return false;
+            logError("Error al releer filas", e, token);
         }
+        return rows;
     }
 
-    public boolean updateRecord(String tableName, ArrayList<Object> values, ArrayList<String> columns,
-                                String whereColumn, Object whereValue) {
-        if (!isConnected()) return false;
-        StringBuilder query = new StringBuilder("UPDATE " + tableName + " SET ");
-        for (int i = 0; i < columns.size(); i++) {
-            if (i > 0) query.append(", ");
-            query.append(columns.get(i)).append(" = ?");
+    /**
+     * Marca de agua para {@link DeltaRefresher}: el xmin del snapshot actual (ninguna
+     * transacción anterior a él sigue abierta) o el máximo de la columna indicada.
+     */
+    public Object readHighWaterMark(String tableName, String column) throws SQLException {
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+        String sql = column == null
+                ? "SELECT txid_snapshot_xmin(txid_current_snapshot())"
+                : "SELECT max(" + column + ") FROM " + tableName;
+        try (ConnectionPool.Lease lease = borrow();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getObject(1) : null;
         }
-        query.append(" WHERE ").append(whereColumn).append(" = ?");
+    }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
-            for (int i = 0; i < values.size(); i++) {
-                pstmt.setObject(i + 1, values.get(i));
+    /**
+     * Filas modificadas desde la marca. Con xmin se compara la edad de la transacción que
+     * escribió cada fila con la de la marca (así no importa la vuelta del contador de 32 bits).
+     * Una fila congelada conserva su xmin (desde 9.4 congelar solo marca la fila), es
+     * anterior a la marca y tampoco sale. Con columna, {@code col >= marca}.
+     * Con {@code loaded} solo se buscan las filas que ese paginador ya ha recorrido: las
+     * de más allá llegarán al desplazarse y el servidor no lee la tabla entera.
+     */
+    public TableData loadChangedSince(String tableName, String column, Object mark, KeysetPager loaded,
+                                      CancelToken token) throws SQLException {
+        TableSchema structure = loadTableStructure(tableName);
+        TableData changed = new TableData(structure);
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName)
+                .append(" WHERE ").append(changedCondition(column, mark, params));
+        String range = loaded == null ? null : loadedRange(structure, loaded, params);
+        if (range != null) sql.append(" AND ").append(range);
+        selectRows(sql.toString(), params, changed, token);
+        return changed;
+    }
+
+    /**
+     * Como {@link #loadChangedSince}, pero solo entre las claves dadas (un resultado de
+     * búsqueda, en el que no se añaden filas nuevas). Cada clave se busca por el índice de la PK.
+     */
+    public TableData loadChangedAmong(String tableName, String column, Object mark, List<Object[]> keys,
+                                      CancelToken token) throws SQLException {
+        TableSchema structure = loadTableStructure(tableName);
+        TableData changed = new TableData(structure);
+        if (keys.isEmpty()) return changed;
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+
+        int[] pk = structure.getPrimaryKeyIndices();
+        List<Object> params = new ArrayList<>();
+        String tuple = "(" + placeholders(pk.length) + ")";
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(tableName)
+                .append(" WHERE ").append(changedCondition(column, mark, params))
+                .append(" AND (").append(keyColumnList(structure, pk)).append(") IN (");
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append(tuple);
+            params.addAll(Arrays.asList(keys.get(i)));
+        }
+        sql.append(")");
+        selectRows(sql.toString(), params, changed, token);
+        return changed;
+    }
+
+    private static String changedCondition(String column, Object mark, List<Object> params) {
+        if (column == null) {
+            params.add(mark);
+            return "age(xmin) <= age((?::bigint % 4294967296)::text::xid)";
+        }
+        // Tabla vacía al fijar la marca: todo lo que haya ahora es nuevo
+        if (mark == null) return "TRUE";
+        params.add(mark);
+        return column + " >= ?";
+    }
+
+    /*
+     * Filas que el paginador ya ha recorrido, como condición: lo contrario de la de su
+     * página siguiente. Null si ya lo ha recorrido todo. Con orden por columna, el tramo
+     * que ya se terminó (nulos o no nulos) entra entero.
+     */
+    private static String loadedRange(TableSchema structure, KeysetPager pager, List<Object> params) {
+        int[] pk = structure.getPrimaryKeyIndices();
+        if (pager.isExhausted() || pk.length == 0) return null;
+        Object[] lastKey = pager.lastKey();
+        String keyList = keyColumnList(structure, pk);
+        SortKey sort = pager.getSort();
+        if (sort == null) {
+            if (lastKey == null) return "FALSE";
+            params.addAll(Arrays.asList(lastKey));
+            return "(" + keyList + ") <= (" + placeholders(pk.length) + ")";
+        }
+
+        String column = sort.getColumn();
+        String cmp = sort.isAscending() ? " <= " : " >= ";
+        boolean nulls = pager.inNullSegment();
+        String current;
+        if (lastKey == null) {
+            current = "FALSE";
+        } else if (nulls) {
+            current = column + " IS NULL AND (" + keyList + ")" + cmp + "(" + placeholders(pk.length) + ")";
+            params.addAll(Arrays.asList(lastKey));
+        } else {
+            current = "(" + column + ", " + keyList + ")" + cmp + "(" + placeholders(pk.length + 1) + ")";
+            params.add(pager.lastSortValue());
+            params.addAll(Arrays.asList(lastKey));
+        }
+        if (!pager.isSecondSegment()) return "(" + current + ")";
+        return "(" + column + (nulls ? " IS NOT NULL" : " IS NULL") + " OR " + current + ")";
+    }
+
+    private void selectRows(String sql, List<Object> params, TableData target, CancelToken token)
+            throws SQLException {
+        try (ConnectionPool.Lease lease = borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            track(token, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                readRows(rs, target);
+            } finally {
+                untrack(token, pstmt);
+            }
+        }
+    }
+
+    /**
+     * De las claves dadas, las que siguen existiendo, en texto (ver {@link DeltaRefresher}).
+     * Solo se leen las columnas de la PK, normalmente desde el propio índice.
+     */
+    public Set<List<String>> existingKeys(String tableName, List<Object[]> keys,
+                                          CancelToken token) throws SQLException {
+        Set<List<String>> existing = new HashSet<>();
+        if (keys.isEmpty()) return existing;
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+
+        TableSchema structure = loadTableStructure(tableName);
+        int[] pk = structure.getPrimaryKeyIndices();
+        String keyList = keyColumnList(structure, pk);
+        String tuple = "(" + placeholders(pk.length) + ")";
+        StringBuilder sql = new StringBuilder("SELECT ").append(keyList).append(" FROM ").append(tableName)
+                .append(" WHERE (").append(keyList).append(") IN (");
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append(tuple);
+        }
+        sql.append(")");
+        try (ConnectionPool.Lease lease = borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Object[] key : keys) {
+                for (Object value : key) {
+                    pstmt.setObject(p++, value);
+                }
+            }
+            track(token, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Object[] key = new Object[pk.length];
+                    for (int i = 0; i < pk.length; i++) {
+                        key[i] = structure.getColumn(pk[i]).getCodec().read(rs, i + 1);
+                    }
+                    existing.add(DeltaRefresher.textKey(key));
+                }
+            } finally {
+                untrack(token, pstmt);
+            }
+        }
+        return existing;
+    }
+
+    private static final String CHANGE_COUNTERS_SQL =
+            "SELECT relname, n_tup_ins, n_tup_upd, n_tup_del FROM pg_catalog.pg_stat_user_tables"
+            + " WHERE relname = ANY(?) AND schemaname = ANY(current_schemas(false))";
+
+    /**
+     * Contadores acumulados de filas insertadas, actualizadas y borradas de cada tabla,
+     * según las estadísticas del servidor. Es una lectura de memoria compartida, sin tocar las tablas.
+     */
+    public Map<String, long[]> readChangeCounters(Collection<String> tableNames) throws SQLException {
+        Map<String, long[]> counters = new HashMap<>();
+        if (!isConnected()) return counters;
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = lease.prepare("pg_stat_user_tables", "CHANGE_COUNTERS",
+                    Collections.emptyList(), () -> CHANGE_COUNTERS_SQL);
+            pstmt.setArray(1, lease.connection().createArrayOf("text", tableNames.toArray()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counters.put(rs.getString(1), new long[] { rs.getLong(2), rs.getLong(3), rs.getLong(4) });
+                }
+            }
+        }
+        return counters;
+    }
+
+    public TableData loadRowByPk(String tableName, String pkColumn, Object pkValue, CancelToken token) {
+        TableData tableData = new TableData(loadTableStructure(tableName));
+        if (!isConnected()) return tableData;
+
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = lease.prepare(tableName, "SELECT_PK", Collections.singletonList(pkColumn),
+                    () -> "SELECT * FROM " + tableName + " WHERE " + pkColumn + " = ?");
+            pstmt.setObject(1, pkValue);
+            track(token, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                readRows(rs, tableData);
+            } finally {
+                untrack(token, pstmt);
             }
-            pstmt.setObject(values.size() + 1, whereValue);
-            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            logError("Error al leer por PK", e, token);
+        }
+        return tableData;
+    }
+
+    /**
+     * Inserta una fila y la devuelve tal como quedó guardada ({@code RETURNING *}), con los
+     * valores por defecto y los que pongan los triggers, para actualizar la vista sin recargar.
+     * Devuelve null si falla.
+     */
+    public ArrayList<Object> insertRecord(String tableName, ArrayList<Object> values, ArrayList<String> columns) {
+        if (!isConnected()) return null;
+
+        // Los statements vienen de la caché de la conexión: no se cierran aquí
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = prepareInsert(lease, tableName, columns, true);
+            bindValues(pstmt, codecsFor(tableName, columns, null), values, null);
+            return readReturnedRow(tableName, pstmt);
+        } catch (SQLException e) {
+            System.err.println("Error al insertar: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Actualiza una fila y la devuelve con sus valores nuevos ({@code RETURNING *}).
+     * Devuelve null si falla o si ningún registro cumple la condición.
+     */
+    public ArrayList<Object> updateRecord(String tableName, ArrayList<Object> values, ArrayList<String> columns,
+                                          String whereColumn, Object whereValue) {
+        if (!isConnected()) return null;
+
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = prepareUpdate(lease, tableName, columns, whereColumn, true);
+            bindValues(pstmt, codecsFor(tableName, columns, whereColumn), values, whereValue);
+            return readReturnedRow(tableName, pstmt);
         } catch (SQLException e) {
             System.err.println("Error al actualizar: " + e.getMessage());
-            return false;
+            return null;
         }
     }
 
+    private ArrayList<Object> readReturnedRow(String tableName, PreparedStatement pstmt) throws SQLException {
+        TableData row = new TableData(loadTableStructure(tableName));
+        try (ResultSet rs = pstmt.executeQuery()) {
+            readRows(rs, row);
+        }
+        return row.getRowCount() > 0 ? row.getRow(0) : null;
+    }
+
     public boolean deleteRecord(String tableName, String whereColumn, Object whereValue) {
         if (!isConnected()) return false;
-        String sql = "DELETE FROM " + tableName + " WHERE " + whereColumn + " = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setObject(1, whereValue);
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = prepareDelete(lease, tableName, whereColumn);
+            bindValues(pstmt, codecsFor(tableName, Collections.emptyList(), whereColumn),
+                    Collections.emptyList(), whereValue);
             return pstmt.executeUpdate() > 0;
         } catch (SQLException e) {
             System.err.println("Error al eliminar: " + e.getMessage());
@@ -237,25 +985,333 @@ public class DatabaseConnection {
         }
     }
 
+    /**
+     * Aplica los cambios de un lote en una sola transacción. Los cambios consecutivos con
+     * la misma sentencia viajan juntos con addBatch/executeBatch, en tandas de batchSize.
+     * Si una tanda falla se deshace solo esa tanda (savepoint) y se repite fila a fila para
+     * saber cuáles fallan; el resto se confirma al final. Si se cancela, no se confirma nada.
+     */
+    public BatchWriter.Result executeBatch(List<BatchWriter.Change> changes, int batchSize,
+                                           CancelToken token) throws SQLException {
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+
+        List<BatchWriter.Failure> failures = new ArrayList<>();
+        int applied = 0;
+        try (ConnectionPool.Lease lease = borrow()) {
+            Connection conn = lease.connection();
+            conn.setAutoCommit(false);
+            try {
+                int start = 0;
+                while (start < changes.size()) {
+                    if (token != null) token.throwIfCancelled();
+                    BatchWriter.Change first = changes.get(start);
+                    int end = start + 1;
+                    while (end < changes.size() && end - start < batchSize && sameShape(first, changes.get(end))) {
+                        end++;
+                    }
+                    PreparedStatement pstmt = prepareChange(lease, first);
+                    TypeCodec[] codecs = codecsFor(first.getTableName(), first.getColumns(), first.getWhereColumn());
+                    applied += applyChunk(conn, pstmt, codecs, changes, start, end, token, failures);
+                    start = end;
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                rollbackQuietly(conn, e);
+                throw e;
+            }
+        }
+        return new BatchWriter.Result(applied, failures);
+    }
+
+    private static int applyChunk(Connection conn, PreparedStatement pstmt, TypeCodec[] codecs,
+                                  List<BatchWriter.Change> changes,
+                                  int start, int end, CancelToken token,
+                                  List<BatchWriter.Failure> failures) throws SQLException {
+        Savepoint savepoint = conn.setSavepoint();
+        int[] counts;
+        try {
+            for (int i = start; i < end; i++) {
+                bindChange(pstmt, codecs, changes.get(i));
+                pstmt.addBatch();
+            }
+            track(token, pstmt);
+            try {
+                counts = pstmt.executeBatch();
+            } finally {
+                untrack(token, pstmt);
+            }
+        } catch (BatchUpdateException e) {
+            // Una fila mala aborta la transacción: volvemos al inicio de la tanda y buscamos cuál fue
+            pstmt.clearBatch();
+            conn.rollback(savepoint);
+            if (token != null) token.throwIfCancelled();
+            return applyOneByOne(conn, pstmt, codecs, changes, start, end, token, failures);
+        }
+        conn.releaseSavepoint(savepoint);
+
+        int applied = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                applied++;
+            } else {
+                failures.add(new BatchWriter.Failure(start + i, changes.get(start + i),
+                        "Ningún registro coincide con la condición"));
+            }
+        }
+        return applied;
+    }
+
+    private static int applyOneByOne(Connection conn, PreparedStatement pstmt, TypeCodec[] codecs,
+                                     List<BatchWriter.Change> changes,
+                                     int start, int end, CancelToken token,
+                                     List<BatchWriter.Failure> failures) throws SQLException {
+        int applied = 0;
+        for (int i = start; i < end; i++) {
+            BatchWriter.Change change = changes.get(i);
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                bindChange(pstmt, codecs, change);
+                track(token, pstmt);
+                if (pstmt.executeUpdate() > 0) {
+                    applied++;
+                } else {
+                    failures.add(new BatchWriter.Failure(i, change, "Ningún registro coincide con la condición"));
+                }
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                if (token != null) token.throwIfCancelled();
+                failures.add(new BatchWriter.Failure(i, change, e.getMessage()));
+            } finally {
+                untrack(token, pstmt);
+            }
+        }
+        return applied;
+    }
+
+    private static boolean sameShape(BatchWriter.Change a, BatchWriter.Change b) {
+        return a.getOperation() == b.getOperation()
+                && a.getTableName().equals(b.getTableName())
+                && a.getColumns().equals(b.getColumns())
+                && Objects.equals(a.getWhereColumn(), b.getWhereColumn());
+    }
+
+    private static PreparedStatement prepareChange(ConnectionPool.Lease lease, BatchWriter.Change change)
+            throws SQLException {
+        switch (change.getOperation()) {
+            case INSERT:
+                return prepareInsert(lease, change.getTableName(), change.getColumns(), false);
+            case UPDATE:
+                return prepareUpdate(lease, change.getTableName(), change.getColumns(), change.getWhereColumn(),
+                        false);
+            default:
+                return prepareDelete(lease, change.getTableName(), change.getWhereColumn());
+        }
+    }
+
+    private static void bindChange(PreparedStatement pstmt, TypeCodec[] codecs,
+                                   BatchWriter.Change change) throws SQLException {
+        bindValues(pstmt, codecs, change.getValues(), change.getWhereValue());
+    }
+
+    /**
+     * Codecs de los parámetros: uno por columna y, si hay condición, el de la columna del
+     * WHERE al final. Una columna que no está en el esquema se asigna con setObject (null).
+     */
+    private TypeCodec[] codecsFor(String tableName, List<String> columns, String whereColumn) {
+        TableSchema schema = loadTableStructure(tableName);
+        TypeCodec[] codecs = new TypeCodec[columns.size() + (whereColumn != null ? 1 : 0)];
+        for (int i = 0; i < columns.size(); i++) {
+            codecs[i] = codecOf(schema, columns.get(i));
+        }
+        if (whereColumn != null) codecs[columns.size()] = codecOf(schema, whereColumn);
+        return codecs;
+    }
+
+    private static TypeCodec codecOf(TableSchema schema, String column) {
+        int i = schema.indexOf(column);
+        return i < 0 ? null : schema.getColumn(i).getCodec();
+    }
+
+    // Valores de las columnas en orden y, si hay condición, el valor del WHERE al final
+    private static void bindValues(PreparedStatement pstmt, TypeCodec[] codecs, List<Object> values,
+                                   Object whereValue) throws SQLException {
+        for (int i = 0; i < codecs.length; i++) {
+            Object value = i < values.size() ? values.get(i) : whereValue;
+            if (codecs[i] != null) {
+                codecs[i].bind(pstmt, i + 1, value);
+            } else {
+                pstmt.setObject(i + 1, value);
+            }
+        }
+    }
+
+    // Con returning la sentencia devuelve la fila guardada; el lote no la necesita
+    private static PreparedStatement prepareInsert(ConnectionPool.Lease lease, String tableName,
+                                                   List<String> columns, boolean returning) throws SQLException {
+        return lease.prepare(tableName, returning ? "INSERT_RETURNING" : "INSERT", columns, () -> {
+            StringBuilder query = new StringBuilder("INSERT INTO " + tableName + " (");
+            StringBuilder placeholders = new StringBuilder("VALUES (");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    query.append(", ");
+                    placeholders.append(", ");
+                }
+                query.append(columns.get(i));
+                placeholders.append("?");
+            }
+            query.append(") ").append(placeholders).append(")");
+            return (returning ? query.append(" RETURNING *") : query).toString();
+        });
+    }
+
+    private static PreparedStatement prepareUpdate(ConnectionPool.Lease lease, String tableName,
+                                                   List<String> columns, String whereColumn,
+                                                   boolean returning) throws SQLException {
+        List<String> shape = new ArrayList<>(columns);
+        shape.add(whereColumn);
+        return lease.prepare(tableName, returning ? "UPDATE_RETURNING" : "UPDATE", shape, () -> {
+            StringBuilder query = new StringBuilder("UPDATE " + tableName + " SET ");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) query.append(", ");
+                query.append(columns.get(i)).append(" = ?");
+            }
+            query.append(" WHERE ").append(whereColumn).append(" = ?");
+            return (returning ? query.append(" RETURNING *") : query).toString();
+        });
+    }
+
+    private static PreparedStatement prepareDelete(ConnectionPool.Lease lease, String tableName,
+                                                   String whereColumn) throws SQLException {
+        return lease.prepare(tableName, "DELETE", Collections.singletonList(whereColumn),
+                () -> "DELETE FROM " + tableName + " WHERE " + whereColumn + " = ?");
+    }
+
+    /**
+     * Carga un archivo CSV/TSV en la tabla con COPY (ver {@link CsvImporter}).
+     * El separador se deduce de la extensión del archivo.
+     */
+    public CsvImporter.Result importCsv(String tableName, Path file, CopyProgressListener listener,
+                                        CancelToken token) throws SQLException, IOException {
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+        CsvImporter importer = new CsvImporter(loadTableStructure(tableName), CsvImporter.delimiterFor(file));
+        try (ConnectionPool.Lease lease = borrow()) {
+            return importer.run(lease.connection(), file, listener, token);
+        }
+    }
+
+    /**
+     * Exporta la tabla, o solo las filas de una búsqueda si {@code searchColumn} no es null,
+     * a un archivo CSV (gzip si {@code gzip}). Ver {@link TableExporter}.
+     */
+    public TableExporter.Result exportCsv(String tableName, SearchEngine.Predicate filter,
+                                          Path file, boolean gzip, CopyProgressListener listener,
+                                          CancelToken token) throws SQLException, IOException {
+        if (!isConnected()) throw new SQLException("No hay conexión con la base de datos");
+        try (ConnectionPool.Lease lease = borrow()) {
+            Connection conn = lease.connection();
+            String sql = "SELECT * FROM " + tableName;
+            if (filter != null) {
+                sql += " WHERE " + inlineParams(conn, filter.toSql(), filter.getParams());
+            }
+            return new TableExporter().run(conn, sql, file, gzip, listener, token);
+        }
+    }
+
+    /*
+     * COPY no admite parámetros: cada ? se sustituye por un literal escapado por el driver
+     * (según standard_conforming_strings). Los literales propios de las condiciones de
+     * SearchEngine no contienen ?, así que todos los ? son marcadores.
+     */
+    private static String inlineParams(Connection conn, String sql, List<Object> params) throws SQLException {
+        PGConnection pg = conn.unwrap(PGConnection.class);
+        StringBuilder out = new StringBuilder(sql.length() + 32);
+        int next = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c != '?') {
+                out.append(c);
+                continue;
+            }
+            Object p = params.get(next++);
+            if (p instanceof SearchEngine.ArrayParam) {
+                out.append("ARRAY[");
+                String[] values = ((SearchEngine.ArrayParam) p).getValues();
+                for (int v = 0; v < values.length; v++) {
+                    if (v > 0) out.append(", ");
+                    out.append('\'').append(pg.escapeLiteral(values[v])).append('\'');
+                }
+                out.append("]::text[]");
+            } else {
+                out.append('\'').append(pg.escapeLiteral(String.valueOf(p))).append('\'');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void bindParams(Connection conn, PreparedStatement pstmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object p = params.get(i);
+            if (p instanceof SearchEngine.ArrayParam) {
+                pstmt.setArray(i + 1, conn.createArrayOf("text", ((SearchEngine.ArrayParam) p).getValues()));
+            } else {
+                pstmt.setObject(i + 1, p);
+            }
+        }
+    }
+
     public TableData searchRecords(String tableName, String searchColumn, String searchValue) {
-        TableData tableData = loadTableStructure(tableName);
+        return searchRecords(tableName, searchColumn, searchValue, null);
+    }
+
+    public TableData searchRecords(String tableName, String searchColumn, String searchValue, CancelToken token) {
+        TableData tableData = new TableData(loadTableStructure(tableName));
         if (!isConnected()) return tableData;
 
-        String sql = "SELECT * FROM " + tableName + " WHERE CAST(" + searchColumn + " AS TEXT) LIKE ? LIMIT 100";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, "%" + searchValue + "%");
+        SearchEngine.Predicate predicate;
+        try {
+            predicate = buildSearch(tableName, searchColumn, searchValue);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error en búsqueda: " + e.getMessage());
+            return tableData;
+        }
+        // La forma de la condición depende del tipo de búsqueda, no de los valores
+        try (ConnectionPool.Lease lease = borrow()) {
+            PreparedStatement pstmt = lease.prepare(tableName, "SEARCH:" + predicate.toSql(),
+                    Collections.singletonList(searchColumn),
+                    () -> "SELECT * FROM " + tableName + " WHERE " + predicate.toSql() + " LIMIT 100");
+            bindParams(lease.connection(), pstmt, predicate.getParams());
+            track(token, pstmt);
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    ArrayList<Object> row = new ArrayList<>();
-                    for (int i = 1; i <= tableData.getColumnCount(); i++) {
-                        row.add(rs.getObject(i));
-                    }
-                    tableData.addRow(row);
-                }
+                readRows(rs, tableData);
+            } finally {
+                untrack(token, pstmt);
             }
         } catch (SQLException e) {
-            System.err.println("Error en búsqueda: " + e.getMessage());
+            logError("Error en búsqueda", e, token);
         }
         return tableData;
     }
+
+    private static void track(CancelToken token, Statement stmt) throws SQLException {
+        if (token != null) token.register(stmt);
+    }
+
+    private static void untrack(CancelToken token, Statement stmt) {
+        if (token != null) token.unregister(stmt);
+    }
+
+    /**
+     * Las páginas no se tragan el error: una página vacía haría creer al paginador que
+     * la tabla se acabó. Solo una cancelación se queda en página vacía, que nadie publica.
+     */
+    private static void rethrowUnlessCancelled(SQLException e, CancelToken token) throws SQLException {
+        if (token == null || !token.isCancelled()) throw e;
+    }
+
+    // Una consulta cancelada a propósito no es un error que haya que reportar
+    private static void logError(String message, SQLException e, CancelToken token) {
+        if (token != null && token.isCancelled()) return;
+        System.err.println(message + ": " + e.getMessage());
+    }
 }
\ No newline at end of file
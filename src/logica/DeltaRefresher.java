@@ -0,0 +1,107 @@
+package logica;
+
+import modelo.TableData;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Actualización incremental de un resultado ya cargado. Recuerda una marca de agua de
+ * la tabla y en cada actualización trae solo las filas cambiadas desde entonces, más
+ * la lista de claves cargadas que ya no existen.
+ *
+ * La marca puede ser el xmin del snapshot (vale para cualquier tabla, pero el servidor
+ * recorre la tabla entera para comparar xmin) o una columna tipo updated_at elegida por
+ * el usuario, que con un índice solo lee las filas nuevas. Con una columna, una transacción
+ * larga que confirme tarde con un valor antiguo no se detecta: es el precio de no recorrer la tabla.
+ */
+public class DeltaRefresher {
+    // Claves por consulta al comprobar cuáles siguen existiendo
+    static final int KEY_BATCH = 1_000;
+
+    /** Filas cambiadas desde la marca anterior y claves cargadas que ya no están. */
+    public static final class Delta {
+        private final TableData changed;
+        private final List<List<String>> deletedKeys;
+
+        Delta(TableData changed, List<List<String>> deletedKeys) {
+            this.changed = changed;
+            this.deletedKeys = Collections.unmodifiableList(deletedKeys);
+        }
+
+        public TableData getChanged() { return changed; }
+        /** Claves en texto, como las de {@link ChangeFeed.RowChange#getKey()}. */
+        public List<List<String>> getDeletedKeys() { return deletedKeys; }
+    }
+
+    private final DatabaseConnection db;
+    private final String tableName;
+    private final String markColumn;
+    private volatile Object mark;
+    private volatile boolean marked;
+
+    /** @param markColumn columna de última modificación, o null para usar xmin */
+    public DeltaRefresher(DatabaseConnection db, String tableName, String markColumn) {
+        this.db = db;
+        this.tableName = tableName;
+        this.markColumn = markColumn;
+    }
+
+    /** Fija la marca; se llama justo antes de una carga completa. */
+    public void markNow() throws SQLException {
+        mark = db.readHighWaterMark(tableName, markColumn);
+        marked = true;
+    }
+
+    public boolean hasMark() { return marked; }
+    public String getMarkColumn() { return markColumn; }
+
+    /**
+     * Cambios desde la marca. La marca nueva se lee antes que los cambios, así lo que
+     * se confirme mientras tanto vuelve a salir la próxima vez en lugar de perderse.
+     * {@code loadedKeys} son las claves primarias de las filas cargadas y {@code pager}
+     * el paginador que las trajo; sin paginador (resultados de búsqueda) solo se miran
+     * esas claves.
+     */
+    public Delta fetchChanges(List<Object[]> loadedKeys, KeysetPager pager, CancelToken token)
+            throws SQLException {
+        Object newMark = db.readHighWaterMark(tableName, markColumn);
+        TableData changed;
+        if (pager != null) {
+            changed = db.loadChangedSince(tableName, markColumn, mark, pager, token);
+        } else {
+            changed = db.emptyResult(tableName);
+            for (int from = 0; from < loadedKeys.size(); from += KEY_BATCH) {
+                List<Object[]> batch = loadedKeys.subList(from, Math.min(loadedKeys.size(), from + KEY_BATCH));
+                TableData part = db.loadChangedAmong(tableName, markColumn, mark, batch, token);
+                for (int r = 0; r < part.getRowCount(); r++) {
+                    changed.addRow(part.getRow(r));
+                }
+            }
+        }
+
+        List<List<String>> deleted = new ArrayList<>();
+        for (int from = 0; from < loadedKeys.size(); from += KEY_BATCH) {
+            if (token != null) token.throwIfCancelled();
+            List<Object[]> batch = loadedKeys.subList(from, Math.min(loadedKeys.size(), from + KEY_BATCH));
+            Set<List<String>> existing = db.existingKeys(tableName, batch, token);
+            for (Object[] key : batch) {
+                List<String> text = textKey(key);
+                if (!existing.contains(text)) deleted.add(text);
+            }
+        }
+        mark = newMark;
+        return new Delta(changed, deleted);
+    }
+
+    static List<String> textKey(Object[] key) {
+        List<String> text = new ArrayList<>(key.length);
+        for (Object value : key) {
+            text.add(String.valueOf(value));
+        }
+        return text;
+    }
+}
@@ -0,0 +1,122 @@
+package logica;
+
+import modelo.TableData;
+
+import java.sql.SQLException;
+
+/**
+ * Recorre una tabla página a página. Si la tabla tiene clave primaria usa
+ * paginación por clave ({@code WHERE pk > ? ORDER BY pk LIMIT n}), de modo que
+ * pedir la página un millón cuesta lo mismo que pedir la primera.
+ * Sin clave primaria recurre a LIMIT/OFFSET.
+ *
+ * Con un {@link SortKey} la clave de continuación pasa a ser {@code (columna, pk)}.
+ * La tabla se recorre en dos tramos, filas con valor y filas con la columna nula,
+ * en el orden en que PostgreSQL las coloca; al agotarse el primero se pasa al segundo.
+ *
+ * fetchNextPage() solo lee; el avance se confirma con advance() cuando la página
+ * se ha publicado, así una página cancelada no deja huecos.
+ */
+public class KeysetPager {
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    private final DatabaseConnection db;
+    private final String tableName;
+    private final int pageSize;
+    private final SortKey sort;
+
+    private volatile Object[] lastKey;
+    private volatile Object lastSortValue;
+    private volatile boolean secondSegment;
+    private volatile long offset;
+    private volatile boolean exhausted;
+
+    public KeysetPager(DatabaseConnection db, String tableName) {
+        this(db, tableName, DEFAULT_PAGE_SIZE);
+    }
+
+    public KeysetPager(DatabaseConnection db, String tableName, int pageSize) {
+        this(db, tableName, null, pageSize);
+    }
+
+    /** Pager ordenado por {@code sort}; con {@code sort} nulo se recorre en orden de PK. */
+    public KeysetPager(DatabaseConnection db, String tableName, SortKey sort) {
+        this(db, tableName, sort, DEFAULT_PAGE_SIZE);
+    }
+
+    public KeysetPager(DatabaseConnection db, String tableName, SortKey sort, int pageSize) {
+        this.db = db;
+        this.tableName = tableName;
+        this.sort = sort;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Lee la página siguiente a la última confirmada, sin modificar el estado. Un error
+     * se propaga y el paginador se queda donde estaba, listo para reintentar.
+     */
+    public TableData fetchNextPage(CancelToken token) throws SQLException {
+        if (!db.loadTableStructure(tableName).hasPrimaryKey()) {
+            return db.loadPageAt(tableName, sort, offset, pageSize, token);
+        }
+        if (sort == null) {
+            return db.loadPage(tableName, lastKey, pageSize, token);
+        }
+        return db.loadSortedPage(tableName, sort, inNullSegment(), lastSortValue, lastKey, pageSize, token);
+    }
+
+    // Ascendente: primero valores y luego nulos; descendente: al revés
+    boolean inNullSegment() {
+        return sort.isAscending() == secondSegment;
+    }
+
+    /** Confirma que la página se ha mostrado y mueve el cursor detrás de su última fila. */
+    public void advance(TableData page) {
+        int rows = page.getRowCount();
+        int[] pk = page.getPrimaryKeyIndices();
+        if (rows < pageSize) {
+            if (sort != null && pk.length > 0 && !secondSegment) {
+                // Fin del primer tramo: la próxima página es la primera del otro
+                secondSegment = true;
+                lastKey = null;
+                lastSortValue = null;
+                offset += rows;
+                return;
+            }
+            exhausted = true;
+        }
+        if (rows == 0) return;
+
+        offset += rows;
+        if (pk.length > 0) {
+            Object[] key = new Object[pk.length];
+            for (int i = 0; i < pk.length; i++) {
+                key[i] = page.getValueAt(rows - 1, pk[i]);
+            }
+            lastKey = key;
+            if (sort != null) {
+                lastSortValue = page.getValueAt(rows - 1, page.getSchema().indexOf(sort.getColumn()));
+            }
+        }
+    }
+
+    public void reset() {
+        lastKey = null;
+        lastSortValue = null;
+        secondSegment = false;
+        offset = 0;
+        exhausted = false;
+    }
+
+    // Posición confirmada, para que DatabaseConnection sepa qué filas se han recorrido ya
+    Object[] lastKey() { return lastKey; }
+    Object lastSortValue() { return lastSortValue; }
+    boolean isSecondSegment() { return secondSegment; }
+
+    /** Orden del recorrido, o null si es el de la clave primaria. */
+    public SortKey getSort() { return sort; }
+
+    public boolean isExhausted() { return exhausted; }
+    public String getTableName() { return tableName; }
+    public int getPageSize() { return pageSize; }
+}
@@ -0,0 +1,22 @@
+package logica;
+
+import modelo.TableData;
+
+import java.sql.SQLException;
+
+/**
+ * Recibe las filas de una lectura en streaming a medida que llegan del servidor.
+ * Los métodos se invocan en el hilo que ejecuta la consulta, no en el de JavaFX.
+ */
+public interface RowStreamListener {
+
+    /**
+     * Un bloque de filas. Cada bloque es un TableData nuevo con las mismas
+     * columnas; el receptor puede quedárselo sin copiarlo. Mientras no vuelve, el
+     * cursor no lee más: un receptor lento frena la lectura en vez de acumular bloques.
+     */
+    void onChunk(TableData chunk) throws SQLException;
+
+    /** Se llama una vez al terminar la lectura (no se llama si falla o se cancela). */
+    default void onComplete(long totalRows) {}
+}
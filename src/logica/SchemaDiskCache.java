@@ -0,0 +1,252 @@
+package logica;
+
+import modelo.ColumnInfo;
+import modelo.DatabaseConfig;
+import modelo.ForeignKeyInfo;
+import modelo.IndexInfo;
+import modelo.TableSchema;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Guarda en disco los esquemas leídos del catálogo, un archivo binario por perfil
+ * de conexión (URL + usuario). Cada archivo lleva la huella del catálogo con la que
+ * se generó; al conectar se calcula la huella actual (barata) y solo si coincide se
+ * usa el archivo, evitando repetir la introspección completa.
+ */
+public class SchemaDiskCache {
+    private static final int MAGIC = 0x53434831; // "SCH1"
+    // 2: OID del tipo de cada columna; 3: cadenas como longitud + UTF-8 (sin el tope de 64 KB)
+    private static final int FORMAT_VERSION = 3;
+
+    /*
+     * La huella combina el xmin (transacción que escribió la fila) de las filas del
+     * catálogo que describen tablas, índices, columnas, defaults y restricciones:
+     * cualquier DDL sobre ellas cambia algún xmin. Las columnas van una a una porque
+     * quitar, renombrar o cambiar el tipo de una columna solo reescribe su fila de
+     * pg_attribute. También incluye el search_path, que decide qué tabla gana si un
+     * nombre se repite.
+     */
+    private static final String FINGERPRINT_SQL =
+            "SELECT md5(current_schemas(false)::text || coalesce(string_agg(x, ',' ORDER BY x), '')) FROM ("
+            + " SELECT 'c' || c.oid || ':' || c.xmin AS x FROM pg_catalog.pg_class c"
+            + "  JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace"
+            + "  WHERE c.relkind IN ('r', 'i') AND n.nspname !~ '^pg_' AND n.nspname <> 'information_schema'"
+            + " UNION ALL"
+            + " SELECT 'a' || a.attrelid || '.' || a.attnum || ':' || a.xmin FROM pg_catalog.pg_attribute a"
+            + "  JOIN pg_catalog.pg_class c ON c.oid = a.attrelid"
+            + "  JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace"
+            + "  WHERE c.relkind = 'r' AND a.attnum > 0"
+            + "  AND n.nspname !~ '^pg_' AND n.nspname <> 'information_schema'"
+            + " UNION ALL"
+            + " SELECT 'd' || d.oid || ':' || d.xmin FROM pg_catalog.pg_attrdef d"
+            + " UNION ALL"
+            + " SELECT 'k' || con.oid || ':' || con.xmin FROM pg_catalog.pg_constraint con"
+            + "  JOIN pg_catalog.pg_namespace n ON n.oid = con.connamespace"
+            + "  WHERE n.nspname !~ '^pg_' AND n.nspname <> 'information_schema'"
+            + ") s";
+
+    private final Path directory;
+
+    public SchemaDiskCache() {
+        this(Paths.get(System.getProperty("user.home"), ".proyecto1_crudg", "schema-cache"));
+    }
+
+    public SchemaDiskCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Calcula la huella actual del catálogo. */
+    public String fingerprint(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(FINGERPRINT_SQL)) {
+            return rs.next() ? rs.getString(1) : "";
+        }
+    }
+
+    /**
+     * Lee los esquemas guardados para el perfil. Devuelve null si no hay archivo,
+     * si la huella no coincide o si el archivo no se puede leer.
+     */
+    public Map<String, TableSchema> load(DatabaseConfig config, String fingerprint) {
+        Path file = fileFor(config);
+        if (!Files.isRegularFile(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            if (!readString(in).equals(fingerprint)) return null;
+
+            int tableCount = in.readInt();
+            Map<String, TableSchema> schemas = new LinkedHashMap<>(tableCount * 2);
+            for (int t = 0; t < tableCount; t++) {
+                TableSchema schema = readSchema(in);
+                schemas.put(schema.getTableName(), schema);
+            }
+            return schemas;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Caché de esquemas ilegible, se regenerará: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Guarda los esquemas con su huella; escribe a un temporal y lo mueve para no dejar archivos a medias. */
+    public void save(DatabaseConfig config, String fingerprint, Map<String, TableSchema> schemas) {
+        Path file = fileFor(config);
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, "schema", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, fingerprint);
+                out.writeInt(schemas.size());
+                for (TableSchema schema : schemas.values()) {
+                    writeSchema(out, schema);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("No se pudo guardar la caché de esquemas: " + e.getMessage());
+        }
+    }
+
+    private Path fileFor(DatabaseConfig config) {
+        return directory.resolve(profileKey(config) + ".bin");
+    }
+
+    // Nombre de archivo estable y sin caracteres problemáticos para el perfil
+    private static String profileKey(DatabaseConfig config) {
+        String key = config.getConnectionUrl() + "|" + config.getUsername();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeSchema(DataOutputStream out, TableSchema schema) throws IOException {
+        writeString(out, schema.getTableName());
+        out.writeLong(schema.getEstimatedRows());
+
+        out.writeShort(schema.getColumnCount());
+        for (ColumnInfo col : schema.getColumns()) {
+            writeString(out, col.getName());
+            writeString(out, col.getType());
+            out.writeBoolean(col.isPrimaryKey());
+            out.writeBoolean(col.isAutoIncrement());
+            out.writeInt(col.getSqlType());
+            out.writeInt(col.getColumnSize());
+            out.writeInt(col.getTypeOid());
+            writeNullable(out, col.getDefaultValue());
+        }
+
+        out.writeShort(schema.getIndexes().size());
+        for (IndexInfo idx : schema.getIndexes()) {
+            writeString(out, idx.getName());
+            writeStrings(out, idx.getColumns());
+            writeString(out, idx.getMethod());
+            out.writeBoolean(idx.isUnique());
+            out.writeBoolean(idx.isPrimary());
+            writeNullable(out, idx.getDefinition());
+        }
+
+        out.writeShort(schema.getForeignKeys().size());
+        for (ForeignKeyInfo fk : schema.getForeignKeys()) {
+            writeString(out, fk.getName());
+            writeStrings(out, fk.getColumns());
+            writeString(out, fk.getReferencedTable());
+            writeStrings(out, fk.getReferencedColumns());
+        }
+    }
+
+    private static TableSchema readSchema(DataInputStream in) throws IOException {
+        String tableName = readString(in);
+        long estimatedRows = in.readLong();
+
+        int columnCount = in.readUnsignedShort();
+        List<ColumnInfo> columns = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            String name = readString(in);
+            String type = readString(in);
+            boolean pk = in.readBoolean();
+            boolean auto = in.readBoolean();
+            int sqlType = in.readInt();
+            int size = in.readInt();
+            int oid = in.readInt();
+            String def = readNullable(in);
+            columns.add(new ColumnInfo(name, type, pk, auto, sqlType, size, def, oid));
+        }
+
+        int indexCount = in.readUnsignedShort();
+        List<IndexInfo> indexes = new ArrayList<>(indexCount);
+        for (int i = 0; i < indexCount; i++) {
+            String name = readString(in);
+            List<String> cols = readStrings(in);
+            String method = readString(in);
+            boolean unique = in.readBoolean();
+            boolean primary = in.readBoolean();
+            indexes.add(new IndexInfo(name, cols, method, unique, primary, readNullable(in)));
+        }
+
+        int fkCount = in.readUnsignedShort();
+        List<ForeignKeyInfo> foreignKeys = new ArrayList<>(fkCount);
+        for (int i = 0; i < fkCount; i++) {
+            String name = readString(in);
+            List<String> cols = readStrings(in);
+            String refTable = readString(in);
+            foreignKeys.add(new ForeignKeyInfo(name, cols, refTable, readStrings(in)));
+        }
+        return new TableSchema(tableName, columns, indexes, foreignKeys, estimatedRows);
+    }
+
+    // writeUTF no admite más de 64 KB (una definición de índice o un default largos)
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("Longitud de cadena no válida: " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) writeString(out, value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeShort(values.size());
+        for (String v : values) writeString(out, v);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int n = in.readUnsignedShort();
+        List<String> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) values.add(readString(in));
+        return values;
+    }
+}
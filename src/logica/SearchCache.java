@@ -0,0 +1,76 @@
+package logica;
+
+import modelo.TableData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché pequeña de resultados completos de búsqueda de una tabla, para la búsqueda
+ * mientras se escribe. Además de los aciertos exactos, si la búsqueda nueva refina
+ * una ya guardada (ver {@link SearchEngine.TextMatch}) filtra sus filas en el cliente
+ * en lugar de consultar al servidor.
+ *
+ * Solo deben guardarse resultados completos (no cortados por un LIMIT), y hay que
+ * vaciarla tras modificar la tabla. No es segura entre hilos: se usa desde el de JavaFX.
+ */
+public class SearchCache {
+    private final Map<String, Entry> entries;
+
+    private static final class Entry {
+        final SearchEngine.Predicate predicate;
+        final TableData rows;
+
+        Entry(SearchEngine.Predicate predicate, TableData rows) {
+            this.predicate = predicate;
+            this.rows = rows;
+        }
+    }
+
+    public SearchCache(int capacity) {
+        entries = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Filas de la búsqueda si están en caché o se pueden obtener refinando otra; si no, null. */
+    public TableData lookup(SearchEngine.Predicate predicate) {
+        Entry exact = entries.get(predicate.cacheKey());
+        if (exact != null) return exact.rows;
+
+        SearchEngine.TextMatch match = predicate.getTextMatch();
+        if (match == null) return null;
+        // La más pequeña de las búsquedas más amplias es la que menos filas hay que revisar
+        Entry best = null;
+        for (Entry e : entries.values()) {
+            SearchEngine.TextMatch broader = e.predicate.getTextMatch();
+            if (broader != null && match.refines(broader)
+                    && (best == null || e.rows.getRowCount() < best.rows.getRowCount())) {
+                best = e;
+            }
+        }
+        if (best == null) return null;
+
+        TableData source = best.rows;
+        TableData refined = new TableData(source.getSchema());
+        int col = match.getColumnIndex();
+        for (int r = 0; r < source.getRowCount(); r++) {
+            if (match.matches(source.getValueAt(r, col))) {
+                refined.addRow(source.getRow(r));
+            }
+        }
+        put(predicate, refined);
+        return refined;
+    }
+
+    public void put(SearchEngine.Predicate predicate, TableData rows) {
+        entries.put(predicate.cacheKey(), new Entry(predicate, rows));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,614 @@
+package logica;
+
+import modelo.ColumnInfo;
+import modelo.IndexInfo;
+import modelo.TableSchema;
+import modelo.TypeCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Construye la condición WHERE de una búsqueda sobre una columna según su tipo y los
+ * índices de la tabla, de forma que el servidor pueda usar un índice siempre que exista:
+ * <ul>
+ *   <li>números, fechas, booleanos y uuid: {@code =}, rangos ({@code a..b}, {@code >x},
+ *       {@code <=x}...) y listas ({@code a, b, c} → {@code = ANY});</li>
+ *   <li>texto: por defecto búsqueda por prefijo ({@code LIKE 'x%'}); si hay un índice
+ *       trigram la búsqueda pasa a "contiene" sin distinguir mayúsculas ({@code ILIKE}),
+ *       y si hay un índice sobre {@code lower(col)} se usa ese;
+ *       {@code =x} busca el valor exacto y {@code =a, b} una lista;</li>
+ *   <li>otros tipos: {@code CAST(col AS TEXT) LIKE '%x%'} (siempre recorrido secuencial).</li>
+ * </ul>
+ * En texto, {@code *} funciona como comodín.
+ *
+ * Además hay dos modos para texto libre sobre una o varias columnas: texto completo
+ * ({@code to_tsvector}/{@code websearch_to_tsquery}, ordenado por {@code ts_rank}) y
+ * similitud por trigramas de pg_trgm (ordenado por {@code word_similarity}). Si falta el
+ * índice GIN que los hace rápidos, la condición incluye la sentencia para crearlo.
+ */
+public class SearchEngine {
+
+    public enum Mode { TYPED, FULL_TEXT, TRIGRAM }
+
+    // Configuración de texto completo; va literal en la expresión para que coincida con la del índice
+    public static final String FTS_CONFIG = "spanish";
+
+    /**
+     * Condición lista para añadir tras WHERE, con su ORDER BY opcional (por relevancia),
+     * los parámetros de ambos en orden y el plan previsto.
+     */
+    public static final class Predicate {
+        private final String column;
+        private final String sql;
+        private final String orderBy;
+        private final List<Object> params;
+        private final String plan;
+        private final List<IndexSuggestion> missingIndexes;
+        private final TextMatch textMatch;
+
+        Predicate(String column, String sql, List<Object> params, String plan) {
+            this(column, sql, null, params, plan, Collections.emptyList(), null);
+        }
+
+        Predicate(String column, String sql, String orderBy, List<Object> params, String plan,
+                  List<IndexSuggestion> missingIndexes) {
+            this(column, sql, orderBy, params, plan, missingIndexes, null);
+        }
+
+        Predicate(String column, String sql, String orderBy, List<Object> params, String plan,
+                  List<IndexSuggestion> missingIndexes, TextMatch textMatch) {
+            this.column = column;
+            this.sql = sql;
+            this.orderBy = orderBy;
+            this.params = Collections.unmodifiableList(params);
+            this.plan = plan;
+            this.missingIndexes = Collections.unmodifiableList(missingIndexes);
+            this.textMatch = textMatch;
+        }
+
+        public String getColumn() { return column; }
+        public String getSql() { return sql; }
+        /** Expresión de ORDER BY, o null si el orden no importa. */
+        public String getOrderBy() { return orderBy; }
+        public List<Object> getParams() { return params; }
+        /** Descripción breve para el usuario: qué índice se espera usar, si alguno. */
+        public String getPlan() { return plan; }
+        /** Índices que harían rápida esta búsqueda y no existen todavía. */
+        public List<IndexSuggestion> getMissingIndexes() { return missingIndexes; }
+
+        /**
+         * Equivalente local de la condición si es un prefijo o un "contiene" sobre texto,
+         * para poder refinar en el cliente resultados ya leídos; null en otro caso.
+         */
+        public TextMatch getTextMatch() { return textMatch; }
+
+        /** Clave que identifica la consulta: misma clave, mismas filas. */
+        public String cacheKey() {
+            return toSql() + " " + params;
+        }
+
+        /** Condición y orden juntos, para poner tras WHERE. */
+        public String toSql() {
+            return orderBy == null ? sql : sql + " ORDER BY " + orderBy;
+        }
+
+        @Override
+        public String toString() {
+            return toSql() + " " + params;
+        }
+    }
+
+    /**
+     * Versión en Java de una condición LIKE/ILIKE simple sobre una columna de texto.
+     * Si una búsqueda refina otra (el prefijo se alarga o el texto contenido crece), sus
+     * filas son un subconjunto de las de la anterior y se pueden filtrar sin ir al servidor.
+     */
+    public static final class TextMatch {
+        public enum Kind { PREFIX, PREFIX_IGNORE_CASE, CONTAINS_IGNORE_CASE }
+
+        private final int columnIndex;
+        private final Kind kind;
+        private final String text;
+
+        TextMatch(int columnIndex, Kind kind, String text) {
+            this.columnIndex = columnIndex;
+            this.kind = kind;
+            this.text = kind == Kind.PREFIX ? text : text.toLowerCase(Locale.ROOT);
+        }
+
+        public int getColumnIndex() { return columnIndex; }
+
+        public boolean matches(Object value) {
+            if (value == null) return false;
+            String s = value.toString();
+            switch (kind) {
+                case PREFIX: return s.startsWith(text);
+                case PREFIX_IGNORE_CASE: return s.toLowerCase(Locale.ROOT).startsWith(text);
+                default: return s.toLowerCase(Locale.ROOT).contains(text);
+            }
+        }
+
+        /** Indica si toda fila que cumple esta condición cumple también {@code broader}. */
+        public boolean refines(TextMatch broader) {
+            if (broader.columnIndex != columnIndex || broader.kind != kind) return false;
+            return kind == Kind.CONTAINS_IGNORE_CASE ? text.contains(broader.text) : text.startsWith(broader.text);
+        }
+    }
+
+    /** Índice sugerido: nombre y sentencia (CREATE INDEX CONCURRENTLY) para crearlo. */
+    public static final class IndexSuggestion {
+        private final String name;
+        private final List<String> statements;
+
+        IndexSuggestion(String name, List<String> statements) {
+            this.name = name;
+            this.statements = Collections.unmodifiableList(statements);
+        }
+
+        public String getName() { return name; }
+        public List<String> getStatements() { return statements; }
+
+        @Override
+        public String toString() {
+            return String.join(";\n", statements);
+        }
+    }
+
+    /**
+     * Parámetro de tipo array para {@code = ANY(CAST(? AS tipo[]))}. Se envía como text[]
+     * y el servidor lo convierte al tipo de la columna, así la comparación usa su índice.
+     */
+    public static final class ArrayParam {
+        private final String[] values;
+
+        ArrayParam(List<String> values) {
+            this.values = values.toArray(new String[0]);
+        }
+
+        public String[] getValues() { return values.clone(); }
+
+        @Override
+        public String toString() {
+            return String.join(", ", values);
+        }
+    }
+
+    private enum Kind { NUMBER, DATE, TIMESTAMP, BOOLEAN, UUID, TEXT, OTHER }
+
+    /**
+     * Condición para buscar {@code input} en la columna {@code columnName}.
+     * Lanza IllegalArgumentException si el valor no es válido para el tipo de la columna.
+     */
+    public Predicate build(TableSchema schema, String columnName, String input) {
+        int index = schema.indexOf(columnName);
+        if (index < 0) throw new IllegalArgumentException("La columna " + columnName + " no existe");
+        ColumnInfo col = schema.getColumn(index);
+        String text = input.trim();
+        if (text.isEmpty()) throw new IllegalArgumentException("Búsqueda vacía");
+
+        Kind kind = kindOf(col);
+        if (kind == Kind.TEXT) return buildText(schema, col, text);
+        if (kind == Kind.OTHER) {
+            List<Object> params = new ArrayList<>();
+            params.add("%" + escapeLike(text) + "%");
+            return new Predicate(col.getName(), "CAST(" + col.getName() + " AS TEXT) LIKE ?", params,
+                    "sin índice: recorrido secuencial");
+        }
+        return buildTyped(schema, col, kind, text);
+    }
+
+    /** Columnas de texto de la tabla, candidatas para los modos de texto completo y similitud. */
+    public static List<String> textColumns(TableSchema schema) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            if (kindOf(schema.getColumn(i)) == Kind.TEXT) {
+                names.add(schema.getColumnName(i));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Búsqueda de texto completo sobre las columnas dadas, con la sintaxis de
+     * websearch_to_tsquery (palabras, "frases", -excluir, or).
+     */
+    public Predicate buildFullText(TableSchema schema, List<String> columns, String input) {
+        checkTextColumns(schema, columns);
+        String document = documentExpression(columns);
+        String query = "websearch_to_tsquery('" + FTS_CONFIG + "'::regconfig, ?)";
+        List<Object> params = new ArrayList<>();
+        params.add(input.trim());
+        params.add(input.trim());
+
+        String label = String.join(", ", columns);
+        IndexInfo existing = findFullTextIndex(schema, columns);
+        List<IndexSuggestion> missing = new ArrayList<>();
+        String plan;
+        if (existing != null) {
+            plan = "índice " + existing.getName() + " (texto completo)";
+        } else {
+            plan = "sin índice de texto completo sobre " + label + ": recorrido secuencial";
+            String name = indexName(schema.getTableName(), columns, "fts");
+            missing.add(new IndexSuggestion(name, Collections.singletonList(
+                    "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON " + schema.getTableName()
+                            + " USING gin (" + document + ")")));
+        }
+        return new Predicate(label, document + " @@ " + query,
+                "ts_rank(" + document + ", " + query + ") DESC", params, plan, missing);
+    }
+
+    /**
+     * Búsqueda por parecido (pg_trgm): filas en las que alguna columna contiene una
+     * palabra parecida al texto buscado, de más a menos parecidas. Se usa la similitud
+     * por palabras ({@code <%}) porque la similitud de la cadena completa penaliza los
+     * textos largos frente a una búsqueda corta.
+     */
+    public Predicate buildTrigram(TableSchema schema, List<String> columns, String input) {
+        checkTextColumns(schema, columns);
+        String value = input.trim();
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        List<String> scores = new ArrayList<>();
+        List<String> indexed = new ArrayList<>();
+        List<IndexSuggestion> missing = new ArrayList<>();
+        for (String column : columns) {
+            conditions.add("? <% " + column);
+            params.add(value);
+            IndexInfo idx = findTrigramIndex(schema, column);
+            if (idx != null) {
+                indexed.add(idx.getName());
+            } else {
+                String name = indexName(schema.getTableName(), Collections.singletonList(column), "trgm");
+                List<String> statements = new ArrayList<>();
+                statements.add("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+                statements.add("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON " + schema.getTableName()
+                        + " USING gin (" + column + " gin_trgm_ops)");
+                missing.add(new IndexSuggestion(name, statements));
+            }
+        }
+        for (String column : columns) {
+            scores.add("word_similarity(?, " + column + ")");
+            params.add(value);
+        }
+
+        String orderBy = (scores.size() == 1 ? scores.get(0) : "greatest(" + String.join(", ", scores) + ")") + " DESC";
+        String plan = missing.isEmpty()
+                ? "índice " + String.join(", ", indexed) + " (trigram)"
+                : "sin índice trigram en " + missing.size() + " de " + columns.size() + " columnas: recorrido secuencial";
+        return new Predicate(String.join(", ", columns), "(" + String.join(" OR ", conditions) + ")",
+                orderBy, params, plan, missing);
+    }
+
+    private static void checkTextColumns(TableSchema schema, List<String> columns) {
+        if (columns.isEmpty()) throw new IllegalArgumentException("La tabla no tiene columnas de texto");
+        for (String column : columns) {
+            int i = schema.indexOf(column);
+            if (i < 0 || kindOf(schema.getColumn(i)) != Kind.TEXT) {
+                throw new IllegalArgumentException("La columna " + column + " no es de texto");
+            }
+        }
+    }
+
+    // La misma expresión se usa en la consulta y en el índice; si difieren, el índice no sirve
+    private static String documentExpression(List<String> columns) {
+        StringBuilder doc = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) doc.append(" || ' ' || ");
+            doc.append("coalesce(").append(columns.get(i)).append("::text, '')");
+        }
+        return "to_tsvector('" + FTS_CONFIG + "'::regconfig, " + doc + ")";
+    }
+
+    /*
+     * Solo vale un índice cuya expresión sea exactamente la del documento (misma
+     * configuración y mismas columnas en el mismo orden); si no, el planificador no lo
+     * usa. Se compara con la forma que devuelve pg_get_indexdef, que añade paréntesis
+     * y los casts implícitos a text.
+     */
+    private static IndexInfo findFullTextIndex(TableSchema schema, List<String> columns) {
+        String wanted = normalizeExpression(documentExpression(columns));
+        for (IndexInfo idx : schema.getIndexes()) {
+            String def = idx.getDefinition();
+            if (!"gin".equals(idx.getMethod()) || def == null) continue;
+            int start = def.indexOf(" USING gin (");
+            // Un índice parcial no sirve para todas las búsquedas
+            if (start < 0 || !def.endsWith(")") || def.contains(" WHERE ")) continue;
+            String expression = def.substring(start + " USING gin (".length(), def.length() - 1);
+            if (normalizeExpression(expression).equals(wanted)) return idx;
+        }
+        return null;
+    }
+
+    // Sin paréntesis, espacios, comillas de identificador ni casts a text, y en minúsculas
+    private static String normalizeExpression(String expression) {
+        return expression.toLowerCase(Locale.ROOT)
+                .replace("::character varying", "")
+                .replace("::text", "")
+                .replaceAll("[()\\s\"]", "");
+    }
+
+    // Nombre de índice válido (63 caracteres como máximo en PostgreSQL)
+    private static String indexName(String table, List<String> columns, String suffix) {
+        String name = table + "_" + String.join("_", columns) + "_" + suffix + "_idx";
+        name = name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+        if (name.length() > 63) {
+            String hash = Integer.toHexString(name.hashCode());
+            name = name.substring(0, 63 - hash.length() - 1) + "_" + hash;
+        }
+        return name;
+    }
+
+    private Predicate buildTyped(TableSchema schema, ColumnInfo col, Kind kind, String text) {
+        String name = col.getName();
+        String placeholder = "CAST(? AS " + castType(col) + ")";
+        String plan = btreePlan(schema, name);
+        List<Object> params = new ArrayList<>();
+
+        if (text.contains(",")) {
+            List<String> items = splitList(text);
+            for (String item : items) {
+                parse(col, kind, item);
+            }
+            params.add(new ArrayParam(items));
+            return new Predicate(name, name + " = ANY(CAST(? AS " + castType(col) + "[]))", params, plan);
+        }
+
+        int range = text.indexOf("..");
+        if (range >= 0 && kind != Kind.BOOLEAN && kind != Kind.UUID) {
+            String from = text.substring(0, range).trim();
+            String to = text.substring(range + 2).trim();
+            List<String> parts = new ArrayList<>();
+            if (!from.isEmpty()) {
+                parts.add(name + " >= " + placeholder);
+                params.add(parse(col, kind, from));
+            }
+            if (!to.isEmpty()) {
+                boolean dayOnly = kind == Kind.TIMESTAMP && isDateOnly(to);
+                parts.add(name + (dayOnly ? " < " : " <= ") + placeholder);
+                params.add(dayOnly ? nextDay(to) : parse(col, kind, to));
+            }
+            if (parts.isEmpty()) throw new IllegalArgumentException("Rango vacío");
+            return new Predicate(name, String.join(" AND ", parts), params, plan);
+        }
+
+        String op = comparison(text);
+        if (op != null && kind != Kind.BOOLEAN && kind != Kind.UUID) {
+            String value = text.substring(op.length()).trim();
+            // Un día sin hora en una columna timestamp cubre el día completo
+            if (kind == Kind.TIMESTAMP && isDateOnly(value)) {
+                if (op.equals(">")) {
+                    op = ">=";
+                    params.add(nextDay(value));
+                } else if (op.equals("<=")) {
+                    op = "<";
+                    params.add(nextDay(value));
+                } else {
+                    params.add(java.sql.Date.valueOf(value));
+                }
+            } else {
+                params.add(parse(col, kind, value));
+            }
+            return new Predicate(name, name + " " + op + " " + placeholder, params, plan);
+        }
+
+        String value = text.startsWith("=") ? text.substring(1).trim() : text;
+        if (kind == Kind.TIMESTAMP && isDateOnly(value)) {
+            params.add(java.sql.Date.valueOf(value));
+            params.add(nextDay(value));
+            return new Predicate(name, name + " >= " + placeholder + " AND " + name + " < " + placeholder,
+                    params, plan);
+        }
+        params.add(parse(col, kind, value));
+        return new Predicate(name, name + " = " + placeholder, params, plan);
+    }
+
+    private Predicate buildText(TableSchema schema, ColumnInfo col, String text) {
+        String name = col.getName();
+        List<Object> params = new ArrayList<>();
+
+        if (text.startsWith("=")) {
+            String value = text.substring(1).trim();
+            if (value.contains(",")) {
+                params.add(new ArrayParam(splitList(value)));
+                return new Predicate(name, name + " = ANY(CAST(? AS " + castType(col) + "[]))", params,
+                        btreePlan(schema, name));
+            }
+            params.add(value);
+            return new Predicate(name, name + " = ?", params, btreePlan(schema, name));
+        }
+
+        String op = comparison(text);
+        if (op != null) {
+            params.add(text.substring(op.length()).trim());
+            return new Predicate(name, name + " " + op + " ?", params, btreePlan(schema, name));
+        }
+
+        // Elegimos la forma de la condición que pueda aprovechar el índice disponible
+        String pattern = escapeLike(text);
+        // Con comodines el filtro local no sería equivalente
+        boolean literal = text.indexOf('*') < 0;
+        int index = schema.indexOf(name);
+        IndexInfo trigram = findTrigramIndex(schema, name);
+        if (trigram != null) {
+            params.add("%" + pattern + "%");
+            return new Predicate(name, name + " ILIKE ?", null, params, "índice " + trigram.getName() + " (trigram)",
+                    Collections.emptyList(),
+                    literal ? new TextMatch(index, TextMatch.Kind.CONTAINS_IGNORE_CASE, text) : null);
+        }
+        IndexInfo lower = findLowerPatternIndex(schema, name);
+        if (lower != null) {
+            params.add(pattern.toLowerCase(Locale.ROOT) + "%");
+            return new Predicate(name, "lower(" + name + ") LIKE ?", null, params, "índice " + lower.getName(),
+                    Collections.emptyList(),
+                    literal ? new TextMatch(index, TextMatch.Kind.PREFIX_IGNORE_CASE, text) : null);
+        }
+        params.add(pattern + "%");
+        TextMatch prefix = literal ? new TextMatch(index, TextMatch.Kind.PREFIX, text) : null;
+        IndexInfo patternOps = findPatternOpsIndex(schema, name);
+        if (patternOps != null) {
+            return new Predicate(name, name + " LIKE ?", null, params, "índice " + patternOps.getName(),
+                    Collections.emptyList(), prefix);
+        }
+        IndexInfo btree = findBtreeIndex(schema, name);
+        String plan = btree == null
+                ? "sin índice: recorrido secuencial"
+                : "índice " + btree.getName() + " (solo con intercalación C; cree uno con text_pattern_ops)";
+        return new Predicate(name, name + " LIKE ?", null, params, plan, Collections.emptyList(), prefix);
+    }
+
+    private static Kind kindOf(ColumnInfo col) {
+        switch (col.getCodec().getCategory()) {
+            case NUMBER: return Kind.NUMBER;
+            case DATE: return Kind.DATE;
+            case TIMESTAMP: return Kind.TIMESTAMP;
+            case BOOLEAN: return Kind.BOOLEAN;
+            case UUID: return Kind.UUID;
+            case TEXT: return Kind.TEXT;
+            default: return Kind.OTHER;
+        }
+    }
+
+    // Tipo para CAST: el del codec (así serial es int4); el texto conserva el suyo (varchar, bpchar)
+    private static String castType(ColumnInfo col) {
+        TypeCodec codec = col.getCodec();
+        return codec.getCastType() == null || codec == TypeCodec.TEXT ? col.getType() : codec.getCastType();
+    }
+
+    private static Object parse(ColumnInfo col, Kind kind, String value) {
+        if (kind == Kind.TIMESTAMP && isDateOnly(value)) {
+            return java.sql.Date.valueOf(value);
+        }
+        Object parsed = col.getCodec().parse(value);
+        if (parsed == null) throw new IllegalArgumentException("Valor vacío para " + col.getName());
+        return parsed;
+    }
+
+    private static boolean isDateOnly(String value) {
+        return value.matches("\\d{4}-\\d{2}-\\d{2}");
+    }
+
+    private static java.sql.Date nextDay(String value) {
+        return java.sql.Date.valueOf(java.sql.Date.valueOf(value).toLocalDate().plusDays(1));
+    }
+
+    private static String comparison(String text) {
+        if (text.startsWith(">=") || text.startsWith("<=") || text.startsWith("<>")) return text.substring(0, 2);
+        if (text.startsWith(">") || text.startsWith("<")) return text.substring(0, 1);
+        return null;
+    }
+
+    private static List<String> splitList(String text) {
+        List<String> items = new ArrayList<>();
+        for (String part : text.split(",")) {
+            String item = part.trim();
+            if (!item.isEmpty()) items.add(item);
+        }
+        if (items.isEmpty()) throw new IllegalArgumentException("Lista vacía");
+        return items;
+    }
+
+    // Escapa los comodines de LIKE del texto del usuario; '*' pasa a ser el comodín
+    private static String escapeLike(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') sb.append('\\').append(c);
+            else if (c == '*') sb.append('%');
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String btreePlan(TableSchema schema, String column) {
+        IndexInfo btree = findBtreeIndex(schema, column);
+        return btree == null ? "sin índice: recorrido secuencial" : "índice " + btree.getName();
+    }
+
+    private static IndexInfo findBtreeIndex(TableSchema schema, String column) {
+        for (IndexInfo idx : schema.getIndexes()) {
+            if ("btree".equals(idx.getMethod()) && idx.startsWith(column)) return idx;
+        }
+        return null;
+    }
+
+    private static IndexInfo findPatternOpsIndex(TableSchema schema, String column) {
+        for (IndexInfo idx : schema.getIndexes()) {
+            String first = firstKeyElement(idx);
+            if ("btree".equals(idx.getMethod()) && idx.startsWith(column) && first.contains("pattern_ops")) {
+                return idx;
+            }
+        }
+        return null;
+    }
+
+    private static IndexInfo findLowerPatternIndex(TableSchema schema, String column) {
+        for (IndexInfo idx : schema.getIndexes()) {
+            String first = firstKeyElement(idx);
+            if ("btree".equals(idx.getMethod()) && first.startsWith("lower(")
+                    && mentions(first, column) && first.contains("pattern_ops")) {
+                return idx;
+            }
+        }
+        return null;
+    }
+
+    // En GIN/GiST cualquier columna del índice sirve, no solo la primera
+    private static IndexInfo findTrigramIndex(TableSchema schema, String column) {
+        for (IndexInfo idx : schema.getIndexes()) {
+            String method = idx.getMethod();
+            if (("gin".equals(method) || "gist".equals(method)) && idx.getDefinition() != null) {
+                for (String element : keyElements(idx.getDefinition())) {
+                    if (element.contains("trgm_ops") && mentions(element, column)
+                            && !element.startsWith("lower(")) {
+                        return idx;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String firstKeyElement(IndexInfo idx) {
+        if (idx.getDefinition() == null) return "";
+        List<String> elements = keyElements(idx.getDefinition());
+        return elements.isEmpty() ? "" : elements.get(0);
+    }
+
+    /*
+     * Elementos de la lista de columnas de pg_get_indexdef, p. ej. de
+     * "CREATE INDEX i ON t USING btree (lower((nombre)::text) text_pattern_ops, id)"
+     * devuelve ["lower((nombre)::text) text_pattern_ops", "id"].
+     */
+    static List<String> keyElements(String definition) {
+        List<String> elements = new ArrayList<>();
+        int using = definition.indexOf(" USING ");
+        int start = definition.indexOf('(', using < 0 ? 0 : using);
+        if (start < 0) return elements;
+        int depth = 0;
+        StringBuilder current = new StringBuilder();
+        for (int i = start + 1; i < definition.length(); i++) {
+            char c = definition.charAt(i);
+            if (c == '(') depth++;
+            if (c == ')') {
+                if (depth == 0) break;
+                depth--;
+            }
+            if (c == ',' && depth == 0) {
+                elements.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() > 0) elements.add(current.toString().trim());
+        return elements;
+    }
+
+    private static boolean mentions(String element, String column) {
+        return element.matches("(?s).*(^|[^A-Za-z0-9_])\"?" + java.util.regex.Pattern.quote(column)
+                + "\"?([^A-Za-z0-9_]|$).*");
+    }
+}
@@ -0,0 +1,60 @@
+package logica;
+
+import modelo.IndexInfo;
+import modelo.TableSchema;
+
+import java.util.Objects;
+
+/**
+ * Orden pedido por el usuario al pulsar una cabecera: una columna y su sentido.
+ * El servidor ordena por {@code columna, pk} para que el orden sea total y se
+ * pueda seguir paginando por clave.
+ */
+public final class SortKey {
+    private final String column;
+    private final boolean ascending;
+
+    public SortKey(String column, boolean ascending) {
+        this.column = Objects.requireNonNull(column);
+        this.ascending = ascending;
+    }
+
+    public String getColumn() { return column; }
+    public boolean isAscending() { return ascending; }
+
+    /** "ASC" o "DESC", para componer el ORDER BY. */
+    String direction() {
+        return ascending ? "ASC" : "DESC";
+    }
+
+    /**
+     * Indica si algún índice btree empieza por la columna. Sin él, el servidor
+     * tiene que leer y ordenar toda la tabla antes de devolver la primera página.
+     */
+    public boolean hasIndex(TableSchema schema) {
+        for (IndexInfo index : schema.getIndexes()) {
+            if ("btree".equalsIgnoreCase(index.getMethod()) && index.startsWith(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SortKey)) return false;
+        SortKey other = (SortKey) o;
+        return ascending == other.ascending && column.equals(other.column);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(column, ascending);
+    }
+
+    @Override
+    public String toString() {
+        return column + " " + direction();
+    }
+}
@@ -0,0 +1,80 @@
+package logica;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché LRU de PreparedStatement de una conexión física, indexada por la "forma"
+ * de la consulta (tabla, operación y columnas). Reutilizar el mismo statement evita
+ * rearmar el SQL y permite que el driver pase a usar un plan preparado en el servidor
+ * tras unas pocas ejecuciones (prepareThreshold).
+ *
+ * Los statements devueltos pertenecen a la caché: quien los usa no debe cerrarlos.
+ * No es segura entre hilos; la protege el préstamo exclusivo de la conexión del pool.
+ */
+class StatementCache {
+
+    /** Forma de una consulta: dos consultas con la misma clave generan el mismo SQL. */
+    record Key(String table, String operation, List<String> columns) {
+        Key {
+            columns = List.copyOf(columns);
+        }
+    }
+
+    /** Contadores compartidos por todas las cachés de un pool. */
+    static final class Stats {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    private final Map<Key, PreparedStatement> statements;
+    private final Stats stats;
+
+    StatementCache(int capacity, Stats stats) {
+        this.stats = stats;
+        this.statements = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= capacity) return false;
+                stats.evictions.incrementAndGet();
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /** Devuelve el statement de la clave; solo si no está en caché se construye el SQL. */
+    PreparedStatement prepare(Connection conn, Key key, Supplier<String> sql) throws SQLException {
+        PreparedStatement cached = statements.get(key);
+        if (cached != null && !cached.isClosed()) {
+            stats.hits.incrementAndGet();
+            return cached;
+        }
+        stats.misses.incrementAndGet();
+        PreparedStatement created = conn.prepareStatement(sql.get());
+        statements.put(key, created);
+        return created;
+    }
+
+    void closeAll() {
+        for (PreparedStatement ps : statements.values()) {
+            closeQuietly(ps);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar statement en caché: " + e.getMessage());
+        }
+    }
+}
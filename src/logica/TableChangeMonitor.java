@@ -0,0 +1,130 @@
+package logica;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detecta cambios en las tablas abiertas leyendo los contadores de pg_stat_user_tables
+ * (n_tup_ins, n_tup_upd, n_tup_del). Todas las ventanas de una conexión comparten un
+ * único sondeo: una consulta pequeña por intervalo sea cual sea el número de tablas,
+ * y solo se avisa a los listeners de las tablas cuyos contadores se han movido.
+ *
+ * Los contadores los publica el servidor al terminar cada transacción, con hasta un
+ * segundo de retraso, así que un cambio se detecta como mucho un intervalo después.
+ */
+public class TableChangeMonitor {
+    public static final long DEFAULT_INTERVAL_MS = 5_000;
+
+    /** Filas insertadas, actualizadas y borradas desde el sondeo anterior. */
+    public static final class Delta {
+        private final long inserted;
+        private final long updated;
+        private final long deleted;
+
+        Delta(long inserted, long updated, long deleted) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+        }
+
+        public long getInserted() { return inserted; }
+        public long getUpdated() { return updated; }
+        public long getDeleted() { return deleted; }
+
+        @Override
+        public String toString() {
+            return "+" + inserted + " ~" + updated + " -" + deleted;
+        }
+    }
+
+    /** Se llama desde el hilo del sondeo, no desde el de la interfaz. */
+    @FunctionalInterface
+    public interface Listener {
+        void onTableChanged(String tableName, Delta delta);
+    }
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "monitor-cambios");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final DatabaseConnection db;
+    private final long intervalMs;
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+    // Últimos contadores vistos por tabla; solo los toca el hilo del sondeo
+    private final Map<String, long[]> lastCounters = new HashMap<>();
+    private ScheduledFuture<?> task;
+
+    public TableChangeMonitor(DatabaseConnection db, long intervalMs) {
+        this.db = db;
+        this.intervalMs = intervalMs;
+    }
+
+    /** Empieza a vigilar la tabla; el sondeo arranca con el primer listener. */
+    public synchronized void subscribe(String tableName, Listener listener) {
+        listeners.computeIfAbsent(tableName, t -> new CopyOnWriteArrayList<>()).add(listener);
+        if (task == null) {
+            task = SCHEDULER.scheduleWithFixedDelay(this::poll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Deja de avisar al listener; sin listeners el sondeo se detiene. */
+    public synchronized void unsubscribe(String tableName, Listener listener) {
+        List<Listener> list = listeners.get(tableName);
+        if (list == null) return;
+        list.remove(listener);
+        if (list.isEmpty()) listeners.remove(tableName);
+        if (listeners.isEmpty() && task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    private void poll() {
+        Set<String> tables = listeners.keySet();
+        lastCounters.keySet().retainAll(tables);
+        if (tables.isEmpty() || !db.isConnected()) return;
+
+        Map<String, long[]> counters;
+        try {
+            counters = db.readChangeCounters(tables);
+        } catch (SQLException e) {
+            System.err.println("Error al leer contadores de cambios: " + e.getMessage());
+            return;
+        }
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            long[] now = entry.getValue();
+            long[] before = lastCounters.put(entry.getKey(), now);
+            // La primera lectura solo fija la referencia
+            if (before == null) continue;
+            // Si las estadísticas se reinician los contadores bajan: se cuenta como cambio
+            if (now[0] != before[0] || now[1] != before[1] || now[2] != before[2]) {
+                Delta delta = new Delta(Math.max(0, now[0] - before[0]),
+                        Math.max(0, now[1] - before[1]), Math.max(0, now[2] - before[2]));
+                notifyListeners(entry.getKey(), delta);
+            }
+        }
+    }
+
+    private void notifyListeners(String tableName, Delta delta) {
+        List<Listener> list = listeners.get(tableName);
+        if (list == null) return;
+        for (Listener listener : list) {
+            try {
+                listener.onTableChanged(tableName, delta);
+            } catch (RuntimeException e) {
+                System.err.println("Error al notificar cambios: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package logica;
+
+import org.postgresql.core.BaseConnection;
+import org.postgresql.copy.CopyOut;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta el resultado de una consulta a un archivo CSV con COPY (...) TO STDOUT.
+ * Los datos pasan del socket al archivo bloque a bloque, sin crear TableData ni
+ * objetos por fila, así la memoria usada no depende del tamaño de la tabla.
+ * Opcionalmente se comprimen con gzip al escribir.
+ */
+public class TableExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 200;
+
+    public static final class Result {
+        private final long rows;
+        private final long bytes;
+        private final long fileSize;
+
+        Result(long rows, long bytes, long fileSize) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.fileSize = fileSize;
+        }
+
+        public long getRows() { return rows; }
+        /** Bytes de CSV recibidos del servidor (antes de comprimir). */
+        public long getBytes() { return bytes; }
+        public long getFileSize() { return fileSize; }
+    }
+
+    /**
+     * Copia el resultado de {@code selectSql} (con cabecera) a {@code file}.
+     * Si falla o se cancela se borra el archivo a medio escribir.
+     */
+    public Result run(Connection conn, String selectSql, Path file, boolean gzip,
+                      CopyProgressListener listener, CancelToken token) throws SQLException, IOException {
+        String sql = "COPY (" + selectSql + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+        BaseConnection pgConn = conn.unwrap(BaseConnection.class);
+        CopyOut copyOut = pgConn.getCopyAPI().copyOut(sql);
+        /*
+         * cancelCopy() necesita el lock de la conexión, que readFromCopy tiene tomado
+         * mientras espera datos; desde otro hilo se pide la cancelación al servidor,
+         * como Statement.cancel(), y readFromCopy termina con error.
+         */
+        Runnable cancelCopy = () -> {
+            try {
+                pgConn.cancelQuery();
+            } catch (SQLException e) {
+                System.err.println("Error al cancelar COPY: " + e.getMessage());
+            }
+        };
+        if (token != null) token.register(cancelCopy);
+        boolean completed = false;
+        try {
+            long messages = 0;
+            long bytes = 0;
+            // El archivo (y el gzip, con su Deflater) se cierra también si falla la copia
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 OutputStream out = open(channel, gzip)) {
+                // En formato CSV el servidor envía un mensaje por fila; el primero es la cabecera
+                long lastReport = System.currentTimeMillis();
+                byte[] data;
+                while ((data = copyOut.readFromCopy()) != null) {
+                    if (token != null) token.throwIfCancelled();
+                    out.write(data);
+                    bytes += data.length;
+                    if ((++messages & 1023) == 0 && listener != null) {
+                        long now = System.currentTimeMillis();
+                        if (now - lastReport >= PROGRESS_INTERVAL_MS) {
+                            listener.onProgress(messages - 1, bytes);
+                            lastReport = now;
+                        }
+                    }
+                }
+            }
+            long rows = Math.max(0, messages - 1);
+            if (listener != null) listener.onProgress(rows, bytes);
+            completed = true;
+            return new Result(rows, bytes, Files.size(file));
+        } finally {
+            if (token != null) token.unregister(cancelCopy);
+            if (copyOut.isActive()) {
+                try {
+                    copyOut.cancelCopy();
+                } catch (SQLException e) {
+                    System.err.println("Error al cancelar COPY: " + e.getMessage());
+                }
+            }
+            if (!completed) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static OutputStream open(FileChannel channel, boolean gzip) throws IOException {
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        return gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+    }
+}
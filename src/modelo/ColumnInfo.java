@@ -1,67 +1,92 @@
 package modelo;
 
-public class ColumnInfo {
-    private String name;
-    private String type;
-    private boolean isPrimaryKey;
-    private boolean isAutoIncrement;
-    private int columnSize;
+/**
+ * Columna de una tabla. Es inmutable: los esquemas en caché se comparten entre ventanas.
+ */
+public final class ColumnInfo {
+    private final String name;
+    private final String type;
+    private final boolean isPrimaryKey;
+    private final boolean isAutoIncrement;
+    private final int columnSize;
+    private final int sqlType; // código de java.sql.Types (DATA_TYPE de los metadatos)
+    private final String defaultValue;
+    private final int typeOid; // pg_type.oid, 0 si no se conoce
+    // Resuelto una vez aquí; el nombre del tipo no se vuelve a examinar
+    private final TypeCodec codec;
 
     // Constructor simplificado (asume que no es autoincrementable)
     public ColumnInfo(String name, String type, boolean isPrimaryKey) {
         this(name, type, isPrimaryKey, false);
     }
 
-    // Constructor completo
     public ColumnInfo(String name, String type, boolean isPrimaryKey, boolean isAutoIncrement) {
+        this(name, type, isPrimaryKey, isAutoIncrement, java.sql.Types.NULL, 0);
+    }
+
+    // Constructor completo, con el código JDBC (java.sql.Types) y el tamaño leídos de los metadatos
+    public ColumnInfo(String name, String type, boolean isPrimaryKey, boolean isAutoIncrement,
+                      int sqlType, int columnSize) {
+        this(name, type, isPrimaryKey, isAutoIncrement, sqlType, columnSize, null);
+    }
+
+    public ColumnInfo(String name, String type, boolean isPrimaryKey, boolean isAutoIncrement,
+                      int sqlType, int columnSize, String defaultValue) {
+        this(name, type, isPrimaryKey, isAutoIncrement, sqlType, columnSize, defaultValue, 0);
+    }
+
+    public ColumnInfo(String name, String type, boolean isPrimaryKey, boolean isAutoIncrement,
+                      int sqlType, int columnSize, String defaultValue, int typeOid) {
         this.name = name;
         this.type = type;
         this.isPrimaryKey = isPrimaryKey;
         this.isAutoIncrement = isAutoIncrement;
-        this.columnSize = 0;
+        this.sqlType = sqlType;
+        this.columnSize = columnSize;
+        this.defaultValue = defaultValue;
+        this.typeOid = typeOid;
+        this.codec = TypeCodec.resolve(typeOid, sqlType, type);
     }
 
-    // --- Getters y setters originales ---
+    // --- Getters originales ---
     public String getName() { return name; }
     public String getType() { return type; }
     public boolean isPrimaryKey() { return isPrimaryKey; }
     public boolean isAutoIncrement() { return isAutoIncrement; }
-    public void setAutoIncrement(boolean isAutoIncrement) { this.isAutoIncrement = isAutoIncrement; }
 
     public int getColumnSize() { return columnSize; }
-    public void setColumnSize(int columnSize) { this.columnSize = columnSize; }
+
+    public int getSqlType() { return sqlType; }
+
+    /** Expresión DEFAULT de la columna tal como la guarda el servidor, o null. */
+    public String getDefaultValue() { return defaultValue; }
+
+    public int getTypeOid() { return typeOid; }
+
+    /** Conversión de valores de esta columna (parse, format, bind y read). */
+    public TypeCodec getCodec() { return codec; }
 
     // --- Nuevos métodos útiles ---
 
     /**
-     * Devuelve la clase Java aproximada para el tipo SQL de la columna.
+     * Devuelve la clase Java de los valores de la columna.
      * Útil para saber qué tipo de objeto esperar al leer valores.
      */
     public Class<?> getJavaClass() {
-        String upper = type.toUpperCase();
-        if (upper.contains("INT") || upper.contains("SERIAL")) return Long.class;
-        if (upper.contains("BOOL")) return Boolean.class;
-        if (upper.contains("UUID")) return java.util.UUID.class;
-        if (upper.contains("DATE")) return java.sql.Date.class;
-        if (upper.contains("TIMESTAMP")) return java.sql.Timestamp.class;
-        if (upper.contains("DECIMAL") || upper.contains("NUMERIC")) return java.math.BigDecimal.class;
-        return String.class;
+        return codec.getJavaClass();
     }
 
     /**
      * Indica si la columna es de tipo numérico (entero, decimal, etc.).
      */
     public boolean isNumeric() {
-        String upper = type.toUpperCase();
-        return upper.contains("INT") || upper.contains("DECIMAL") || upper.contains("NUMERIC") ||
-               upper.contains("FLOAT") || upper.contains("DOUBLE") || upper.contains("SERIAL");
+        return codec.isNumeric();
     }
 
     /**
      * Indica si la columna es de tipo fecha (DATE, TIMESTAMP, etc.).
      */
     public boolean isDateLike() {
-        String upper = type.toUpperCase();
-        return upper.contains("DATE") || upper.contains("TIMESTAMP");
+        return codec.isDateLike();
     }
-}
\ No newline at end of file
+}
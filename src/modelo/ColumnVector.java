@@ -0,0 +1,316 @@
+package modelo;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Almacenamiento por columnas de TableData. Cada columna guarda sus valores en un
+ * arreglo primitivo según su tipo (long[], int[], double[]...) más un mapa de bits
+ * de nulos, en lugar de un objeto por celda. Las cadenas de baja cardinalidad se
+ * guardan codificadas con diccionario.
+ */
+abstract class ColumnVector {
+    private static final int INITIAL_CAPACITY = 16;
+
+    protected int size;
+    private long[] nulls = new long[1];
+
+    /** Crea la columna vacía correspondiente a la representación indicada. */
+    static ColumnVector create(StorageType type) {
+        switch (type) {
+            case LONG: return new LongVector();
+            case INT: return new IntVector();
+            case DOUBLE: return new DoubleVector(false);
+            case FLOAT: return new DoubleVector(true);
+            case BOOLEAN: return new BooleanVector();
+            case DATE: return new DateVector();
+            case TIMESTAMP: return new TimestampVector();
+            case TEXT: return new DictionaryVector();
+            default: return new ObjectVector();
+        }
+    }
+
+    int size() { return size; }
+
+    boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void setNull(int row, boolean isNull) {
+        int word = row >>> 6;
+        if (word >= nulls.length) {
+            nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, word + 1));
+        }
+        if (isNull) {
+            nulls[word] |= 1L << row;
+        } else {
+            nulls[word] &= ~(1L << row);
+        }
+    }
+
+    protected static int grow(int current, int needed) {
+        return Math.max(needed, Math.max(INITIAL_CAPACITY, current + (current >> 1)));
+    }
+
+    /** Añade un valor ya convertido; devuelve false si el tipo no encaja con la columna. */
+    boolean append(Object value) {
+        if (value == null) {
+            ensureCapacity(size + 1);
+            setNull(size, true);
+            size++;
+            return true;
+        }
+        if (!accepts(value)) return false;
+        ensureCapacity(size + 1);
+        setNull(size, false);
+        store(size, value);
+        size++;
+        return true;
+    }
+
+    /** Lee la columna {@code index} de la fila actual del ResultSet con el getter tipado. */
+    void read(ResultSet rs, int index) throws SQLException {
+        ensureCapacity(size + 1);
+        boolean isNull = !readInto(rs, index, size);
+        setNull(size, isNull);
+        size++;
+    }
+
+    Object get(int row) {
+        return isNull(row) ? null : box(row);
+    }
+
+    long getLong(int row) {
+        Object v = get(row);
+        return v instanceof Number ? ((Number) v).longValue() : 0L;
+    }
+
+    double getDouble(int row) {
+        Object v = get(row);
+        return v instanceof Number ? ((Number) v).doubleValue() : 0.0;
+    }
+
+    void clear() {
+        size = 0;
+        Arrays.fill(nulls, 0L);
+    }
+
+    /** Copia los valores a una columna genérica, para valores que no encajan en el tipo. */
+    ColumnVector toObjectVector() {
+        ObjectVector copy = new ObjectVector();
+        for (int i = 0; i < size; i++) {
+            copy.append(get(i));
+        }
+        return copy;
+    }
+
+    protected abstract void ensureCapacity(int capacity);
+    protected abstract boolean accepts(Object value);
+    protected abstract void store(int row, Object value);
+    /** Guarda el valor de la fila; devuelve false si el valor era NULL. */
+    protected abstract boolean readInto(ResultSet rs, int index, int row) throws SQLException;
+    protected abstract Object box(int row);
+
+    static final class LongVector extends ColumnVector {
+        private long[] values = new long[0];
+
+        @Override protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+        @Override protected boolean accepts(Object value) {
+            return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+        }
+        @Override protected void store(int row, Object value) { values[row] = ((Number) value).longValue(); }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            values[row] = rs.getLong(index);
+            return !rs.wasNull();
+        }
+        @Override protected Object box(int row) { return values[row]; }
+        @Override long getLong(int row) { return isNull(row) ? 0L : values[row]; }
+        @Override double getDouble(int row) { return isNull(row) ? 0.0 : values[row]; }
+    }
+
+    static final class IntVector extends ColumnVector {
+        private int[] values = new int[0];
+
+        @Override protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+        @Override protected boolean accepts(Object value) {
+            return value instanceof Integer || value instanceof Short || value instanceof Byte;
+        }
+        @Override protected void store(int row, Object value) { values[row] = ((Number) value).intValue(); }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            values[row] = rs.getInt(index);
+            return !rs.wasNull();
+        }
+        @Override protected Object box(int row) { return values[row]; }
+        @Override long getLong(int row) { return isNull(row) ? 0L : values[row]; }
+        @Override double getDouble(int row) { return isNull(row) ? 0.0 : values[row]; }
+    }
+
+    static final class DoubleVector extends ColumnVector {
+        // REAL (float4) se devuelve como Float para conservar el tipo que daba getObject
+        private final boolean single;
+        private double[] values = new double[0];
+
+        DoubleVector(boolean single) {
+            this.single = single;
+        }
+
+        @Override protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+        @Override protected boolean accepts(Object value) {
+            return single ? value instanceof Float : value instanceof Double || value instanceof Float;
+        }
+        @Override protected void store(int row, Object value) { values[row] = ((Number) value).doubleValue(); }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            values[row] = rs.getDouble(index);
+            return !rs.wasNull();
+        }
+        @Override protected Object box(int row) { return single ? (Object) (float) values[row] : (Object) values[row]; }
+        @Override long getLong(int row) { return isNull(row) ? 0L : (long) values[row]; }
+        @Override double getDouble(int row) { return isNull(row) ? 0.0 : values[row]; }
+    }
+
+    static final class BooleanVector extends ColumnVector {
+        private long[] bits = new long[1];
+
+        @Override protected void ensureCapacity(int capacity) {
+            int words = (capacity + 63) >>> 6;
+            if (words > bits.length) bits = Arrays.copyOf(bits, Math.max(words, bits.length * 2));
+        }
+        @Override protected boolean accepts(Object value) { return value instanceof Boolean; }
+        @Override protected void store(int row, Object value) { set(row, (Boolean) value); }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            set(row, rs.getBoolean(index));
+            return !rs.wasNull();
+        }
+        private void set(int row, boolean value) {
+            if (value) bits[row >>> 6] |= 1L << row;
+            else bits[row >>> 6] &= ~(1L << row);
+        }
+        @Override protected Object box(int row) { return (bits[row >>> 6] & (1L << row)) != 0; }
+    }
+
+    /** Fechas como milisegundos desde la época. */
+    static final class DateVector extends ColumnVector {
+        private long[] millis = new long[0];
+
+        @Override protected void ensureCapacity(int capacity) {
+            if (capacity > millis.length) millis = Arrays.copyOf(millis, grow(millis.length, capacity));
+        }
+        @Override protected boolean accepts(Object value) { return value instanceof java.sql.Date; }
+        @Override protected void store(int row, Object value) { millis[row] = ((java.sql.Date) value).getTime(); }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            java.sql.Date d = rs.getDate(index);
+            if (d == null) return false;
+            millis[row] = d.getTime();
+            return true;
+        }
+        @Override protected Object box(int row) { return new java.sql.Date(millis[row]); }
+        @Override long getLong(int row) { return isNull(row) ? 0L : millis[row]; }
+    }
+
+    /** Marcas de tiempo como microsegundos desde la época (la precisión de PostgreSQL). */
+    static final class TimestampVector extends ColumnVector {
+        private long[] micros = new long[0];
+
+        @Override protected void ensureCapacity(int capacity) {
+            if (capacity > micros.length) micros = Arrays.copyOf(micros, grow(micros.length, capacity));
+        }
+        @Override protected boolean accepts(Object value) { return value instanceof Timestamp; }
+        @Override protected void store(int row, Object value) { micros[row] = toMicros((Timestamp) value); }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            Timestamp ts = rs.getTimestamp(index);
+            if (ts == null) return false;
+            micros[row] = toMicros(ts);
+            return true;
+        }
+        private static long toMicros(Timestamp ts) {
+            return Math.floorDiv(ts.getTime(), 1000L) * 1_000_000L + ts.getNanos() / 1000;
+        }
+        @Override protected Object box(int row) {
+            long m = micros[row];
+            Timestamp ts = new Timestamp(Math.floorDiv(m, 1_000_000L) * 1000L);
+            ts.setNanos((int) Math.floorMod(m, 1_000_000L) * 1000);
+            return ts;
+        }
+        @Override long getLong(int row) { return isNull(row) ? 0L : micros[row]; }
+    }
+
+    /**
+     * Cadenas codificadas con diccionario: cada fila guarda el código de su valor.
+     * Si la columna resulta tener demasiados valores distintos, TableData la pasa a
+     * un ObjectVector (ver {@link #shouldDegrade()}).
+     */
+    static final class DictionaryVector extends ColumnVector {
+        private static final int MAX_ENTRIES = 1 << 16;
+        private static final int MIN_ROWS_TO_JUDGE = 1024;
+
+        private int[] codes = new int[0];
+        private final ArrayList<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> lookup = new HashMap<>();
+
+        @Override protected void ensureCapacity(int capacity) {
+            if (capacity > codes.length) codes = Arrays.copyOf(codes, grow(codes.length, capacity));
+        }
+        @Override protected boolean accepts(Object value) { return value instanceof String; }
+        @Override protected void store(int row, Object value) { codes[row] = encode((String) value); }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            String s = rs.getString(index);
+            if (s == null) return false;
+            codes[row] = encode(s);
+            return true;
+        }
+        private int encode(String value) {
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            return code;
+        }
+        @Override protected Object box(int row) { return dictionary.get(codes[row]); }
+
+        /** El diccionario deja de compensar cuando casi cada fila trae un valor nuevo. */
+        boolean shouldDegrade() {
+            int distinct = dictionary.size();
+            return distinct > MAX_ENTRIES || (size >= MIN_ROWS_TO_JUDGE && distinct > size / 2);
+        }
+
+        @Override void clear() {
+            super.clear();
+            dictionary.clear();
+            lookup.clear();
+        }
+    }
+
+    /** Columna genérica para tipos sin representación primitiva (NUMERIC, UUID, JSON...). */
+    static final class ObjectVector extends ColumnVector {
+        private Object[] values = new Object[0];
+
+        @Override protected void ensureCapacity(int capacity) {
+            if (capacity > values.length) values = Arrays.copyOf(values, grow(values.length, capacity));
+        }
+        @Override protected boolean accepts(Object value) { return true; }
+        @Override protected void store(int row, Object value) { values[row] = value; }
+        @Override protected boolean readInto(ResultSet rs, int index, int row) throws SQLException {
+            values[row] = rs.getObject(index);
+            return values[row] != null;
+        }
+        @Override protected Object box(int row) { return values[row]; }
+        @Override ColumnVector toObjectVector() { return this; }
+        @Override void clear() {
+            Arrays.fill(values, 0, size, null);
+            super.clear();
+        }
+    }
+}
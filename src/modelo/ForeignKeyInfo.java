@@ -0,0 +1,31 @@
+package modelo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Clave foránea de una tabla: columnas locales y las columnas referenciadas.
+ */
+public final class ForeignKeyInfo {
+    private final String name;
+    private final List<String> columns;
+    private final String referencedTable;
+    private final List<String> referencedColumns;
+
+    public ForeignKeyInfo(String name, List<String> columns, String referencedTable, List<String> referencedColumns) {
+        this.name = name;
+        this.columns = Collections.unmodifiableList(columns);
+        this.referencedTable = referencedTable;
+        this.referencedColumns = Collections.unmodifiableList(referencedColumns);
+    }
+
+    public String getName() { return name; }
+    public List<String> getColumns() { return columns; }
+    public String getReferencedTable() { return referencedTable; }
+    public List<String> getReferencedColumns() { return referencedColumns; }
+
+    @Override
+    public String toString() {
+        return name + ": " + columns + " -> " + referencedTable + referencedColumns;
+    }
+}
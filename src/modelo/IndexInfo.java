@@ -0,0 +1,46 @@
+package modelo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Índice de una tabla tal como aparece en el catálogo (pg_index).
+ * Las columnas de expresiones aparecen como cadena vacía; la definición completa
+ * (pg_get_indexdef) permite reconocer clases de operadores como text_pattern_ops.
+ */
+public final class IndexInfo {
+    private final String name;
+    private final List<String> columns;
+    private final String method;
+    private final boolean unique;
+    private final boolean primary;
+    private final String definition;
+
+    public IndexInfo(String name, List<String> columns, String method,
+                     boolean unique, boolean primary, String definition) {
+        this.name = name;
+        this.columns = Collections.unmodifiableList(columns);
+        this.method = method;
+        this.unique = unique;
+        this.primary = primary;
+        this.definition = definition;
+    }
+
+    public String getName() { return name; }
+    public List<String> getColumns() { return columns; }
+    /** Método de acceso: btree, hash, gin, gist, brin... */
+    public String getMethod() { return method; }
+    public boolean isUnique() { return unique; }
+    public boolean isPrimary() { return primary; }
+    public String getDefinition() { return definition; }
+
+    /** Indica si la columna es la primera del índice (la única que sirve para búsquedas por sí sola). */
+    public boolean startsWith(String columnName) {
+        return !columns.isEmpty() && columns.get(0).equals(columnName);
+    }
+
+    @Override
+    public String toString() {
+        return definition != null ? definition : name;
+    }
+}
@@ -0,0 +1,14 @@
+package modelo;
+
+/**
+ * Representación en memoria de una columna dentro de TableData.
+ * Se resuelve una sola vez por columna al construir el TableSchema.
+ */
+public enum StorageType {
+    LONG, INT, DOUBLE, FLOAT, BOOLEAN, DATE, TIMESTAMP, TEXT, OBJECT;
+
+    /** Representación de la columna; la decide su {@link TypeCodec}. */
+    public static StorageType of(ColumnInfo col) {
+        return col.getCodec().getStorageType();
+    }
+}
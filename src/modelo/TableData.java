@@ -1,37 +1,151 @@
 package modelo;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Resultado tabular. Los valores se guardan por columnas en arreglos primitivos
+ * (ver ColumnVector); getValueAt y getRows siguen disponibles como vistas de
+ * compatibilidad que crean los objetos solo cuando se piden.
+ */
 public class TableData {
+    // Cada cuántas filas se revisa si un diccionario de cadenas sigue compensando
+    private static final int DICTIONARY_CHECK_INTERVAL = 1024;
+
     private ArrayList<ColumnInfo> columns;
-    private ArrayList<ArrayList<Object>> rows;
+    private ArrayList<ColumnVector> vectors;
+    private int rowCount;
+    private final TableSchema schema;
 
     public TableData() {
         columns = new ArrayList<>();
-        rows = new ArrayList<>();
+        vectors = new ArrayList<>();
+        schema = null;
+    }
+
+    /** Resultado vacío con las columnas del esquema; el esquema no se copia ni se modifica. */
+    public TableData(TableSchema schema) {
+        this.schema = schema;
+        columns = new ArrayList<>(schema.getColumns());
+        vectors = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            vectors.add(ColumnVector.create(schema.getStorageType(i)));
+        }
+    }
+
+    /** Esquema del que sale este resultado, o null si se construyó columna a columna. */
+    public TableSchema getSchema() { return schema; }
+
+    /** Resultado vacío con las mismas columnas, para añadirle filas sin tocar este. */
+    public TableData emptyCopy() {
+        if (schema != null) return new TableData(schema);
+        TableData copy = new TableData();
+        for (ColumnInfo column : columns) {
+            copy.addColumn(column);
+        }
+        return copy;
     }
 
     // --- Métodos originales ---
     public void addColumn(ColumnInfo column) {
+        if (schema != null) {
+            throw new UnsupportedOperationException("Las columnas de un resultado vienen de su esquema");
+        }
         columns.add(column);
+        ColumnVector vector = ColumnVector.create(StorageType.of(column));
+        // Si ya hay filas, la nueva columna empieza con nulos
+        for (int i = 0; i < rowCount; i++) {
+            vector.append(null);
+        }
+        vectors.add(vector);
     }
 
     public void addRow(ArrayList<Object> row) {
-        rows.add(row);
+        for (int c = 0; c < vectors.size(); c++) {
+            Object value = c < row.size() ? row.get(c) : null;
+            ColumnVector vector = vectors.get(c);
+            if (!vector.append(value)) {
+                // El valor no encaja en el tipo primitivo: la columna pasa a guardar objetos
+                vector = vector.toObjectVector();
+                vectors.set(c, vector);
+                vector.append(value);
+            }
+        }
+        rowAdded();
+    }
+
+    /**
+     * Añade la fila actual del ResultSet leyendo cada columna con su getter
+     * tipado (getLong, getDouble...), sin crear objetos intermedios.
+     */
+    public void readRow(ResultSet rs) throws SQLException {
+        for (int c = 0; c < vectors.size(); c++) {
+            vectors.get(c).read(rs, c + 1);
+        }
+        rowAdded();
     }
 
+    private void rowAdded() {
+        rowCount++;
+        if (rowCount % DICTIONARY_CHECK_INTERVAL == 0) {
+            for (int c = 0; c < vectors.size(); c++) {
+                ColumnVector vector = vectors.get(c);
+                if (vector instanceof ColumnVector.DictionaryVector
+                        && ((ColumnVector.DictionaryVector) vector).shouldDegrade()) {
+                    vectors.set(c, vector.toObjectVector());
+                }
+            }
+        }
+    }
+
+    /** Vacía el resultado; si tiene esquema conserva las columnas. */
     public void clear() {
-        columns.clear();
-        rows.clear();
+        if (schema == null) {
+            columns.clear();
+            vectors.clear();
+        } else {
+            for (int i = 0; i < vectors.size(); i++) {
+                vectors.set(i, ColumnVector.create(schema.getStorageType(i)));
+            }
+        }
+        rowCount = 0;
     }
 
     public ArrayList<ColumnInfo> getColumns() { return columns; }
-    public ArrayList<ArrayList<Object>> getRows() { return rows; }
+
+    /**
+     * Vista de solo lectura de las filas. Cada acceso crea la lista de la fila,
+     * por lo que conviene usar getValueAt para recorridos grandes.
+     */
+    public List<ArrayList<Object>> getRows() {
+        return new AbstractList<>() {
+            @Override
+            public ArrayList<Object> get(int index) {
+                return getRow(index);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    public ArrayList<Object> getRow(int row) {
+        ArrayList<Object> values = new ArrayList<>(vectors.size());
+        for (ColumnVector vector : vectors) {
+            values.add(vector.get(row));
+        }
+        return values;
+    }
 
     public int getColumnCount() { return columns.size(); }
-    public int getRowCount() { return rows.size(); }
+    public int getRowCount() { return rowCount; }
 
     public String getColumnName(int index) {
         if (index >= 0 && index < columns.size()) {
@@ -41,13 +155,28 @@ public class TableData {
     }
 
     public Object getValueAt(int row, int col) {
-        if (row >= 0 && row < rows.size() && col >= 0 && col < columns.size()) {
-            return rows.get(row).get(col);
+        if (row >= 0 && row < rowCount && col >= 0 && col < columns.size()) {
+            return vectors.get(col).get(row);
         }
         return null;
     }
 
+    public boolean isNullAt(int row, int col) {
+        return vectors.get(col).isNull(row);
+    }
+
+    /** Valor entero sin boxing; 0 si es NULL. Fechas en ms y marcas de tiempo en µs. */
+    public long getLongAt(int row, int col) {
+        return vectors.get(col).getLong(row);
+    }
+
+    /** Valor decimal sin boxing; 0 si es NULL. */
+    public double getDoubleAt(int row, int col) {
+        return vectors.get(col).getDouble(row);
+    }
+
     public Map<String, Integer> getColumnIndexMap() {
+        if (schema != null) return schema.getColumnIndexMap();
         Map<String, Integer> map = new HashMap<>();
         for (int i = 0; i < columns.size(); i++) {
             map.put(columns.get(i).getName(), i);
@@ -69,8 +198,26 @@ public class TableData {
         return -1;
     }
 
+    /**
+     * Índices de todas las columnas que forman la clave primaria (más de una si es compuesta).
+     */
+    public int[] getPrimaryKeyIndices() {
+        if (schema != null) return schema.getPrimaryKeyIndices();
+        int count = 0;
+        for (ColumnInfo col : columns) {
+            if (col.isPrimaryKey()) count++;
+        }
+        int[] indices = new int[count];
+        int next = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).isPrimaryKey()) indices[next++] = i;
+        }
+        return indices;
+    }
+
+    /** Texto del valor según el codec de la columna; la vista usa sus propias celdas con caché. */
     public String getFormattedValueAt(int row, int col) {
         Object val = getValueAt(row, col);
-        return val == null ? "" : val.toString();
+        return val == null ? "" : columns.get(col).getCodec().format(val);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package modelo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estructura inmutable de una tabla: columnas, clave primaria, índice de columnas
+ * por nombre, la representación en memoria de cada columna y, si se cargó desde el
+ * catálogo, sus índices, claves foráneas y el número estimado de filas.
+ * Se comparte desde la caché de DatabaseConnection; los datos de cada consulta
+ * van en un TableData nuevo creado a partir de ella.
+ */
+public final class TableSchema {
+    private final String tableName;
+    private final List<ColumnInfo> columns;
+    private final List<IndexInfo> indexes;
+    private final List<ForeignKeyInfo> foreignKeys;
+    private final long estimatedRows;
+    private final Map<String, Integer> columnIndex;
+    private final int[] primaryKeyIndices;
+    private final StorageType[] storageTypes;
+
+    public TableSchema(String tableName, List<ColumnInfo> columns) {
+        this(tableName, columns, Collections.emptyList(), Collections.emptyList(), -1);
+    }
+
+    /**
+     * @param estimatedRows filas estimadas por el planificador (pg_class.reltuples), -1 si se desconoce
+     */
+    public TableSchema(String tableName, List<ColumnInfo> columns, List<IndexInfo> indexes,
+                       List<ForeignKeyInfo> foreignKeys, long estimatedRows) {
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.indexes = Collections.unmodifiableList(new ArrayList<>(indexes));
+        this.foreignKeys = Collections.unmodifiableList(new ArrayList<>(foreignKeys));
+        this.estimatedRows = estimatedRows;
+
+        Map<String, Integer> index = new HashMap<>();
+        int pkCount = 0;
+        storageTypes = new StorageType[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnInfo col = columns.get(i);
+            index.put(col.getName(), i);
+            storageTypes[i] = StorageType.of(col);
+            if (col.isPrimaryKey()) pkCount++;
+        }
+        this.columnIndex = Collections.unmodifiableMap(index);
+
+        primaryKeyIndices = new int[pkCount];
+        int next = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).isPrimaryKey()) primaryKeyIndices[next++] = i;
+        }
+    }
+
+    public String getTableName() { return tableName; }
+    public List<ColumnInfo> getColumns() { return columns; }
+    public int getColumnCount() { return columns.size(); }
+    public ColumnInfo getColumn(int index) { return columns.get(index); }
+
+    public String getColumnName(int index) {
+        if (index >= 0 && index < columns.size()) {
+            return columns.get(index).getName();
+        }
+        return "";
+    }
+
+    /** Posición de la columna o -1 si no existe. */
+    public int indexOf(String columnName) {
+        Integer i = columnIndex.get(columnName);
+        return i == null ? -1 : i;
+    }
+
+    public Map<String, Integer> getColumnIndexMap() { return columnIndex; }
+
+    public StorageType getStorageType(int index) { return storageTypes[index]; }
+
+    public ColumnInfo getPrimaryKeyColumn() {
+        return primaryKeyIndices.length == 0 ? null : columns.get(primaryKeyIndices[0]);
+    }
+
+    public int getPrimaryKeyIndex() {
+        return primaryKeyIndices.length == 0 ? -1 : primaryKeyIndices[0];
+    }
+
+    /** Índices de todas las columnas de la clave primaria (más de una si es compuesta). */
+    public int[] getPrimaryKeyIndices() { return primaryKeyIndices.clone(); }
+
+    public boolean hasPrimaryKey() { return primaryKeyIndices.length > 0; }
+
+    public List<IndexInfo> getIndexes() { return indexes; }
+    public List<ForeignKeyInfo> getForeignKeys() { return foreignKeys; }
+    public long getEstimatedRows() { return estimatedRows; }
+
+    @Override
+    public String toString() {
+        return "TableSchema{" + tableName + ", columnas=" + columns.size() + "}";
+    }
+}
@@ -0,0 +1,381 @@
+package modelo;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Conversión de valores de un tipo de columna: texto del usuario a objeto (parse),
+ * objeto a texto (format), parámetro de un PreparedStatement (bind) y lectura de un
+ * ResultSet (read), cada una con el getter/setter tipado que corresponde.
+ *
+ * Cada columna resuelve su codec una sola vez al crearse el ColumnInfo, a partir del
+ * OID de PostgreSQL, el nombre exacto del tipo o el código JDBC; después nadie vuelve
+ * a mirar el nombre del tipo. Los tipos sin codec propio (interval, point, json, inet,
+ * enumerados...) se envían como texto sin tipo y el servidor los convierte.
+ */
+public abstract class TypeCodec {
+
+    /** Familia del tipo, para decidir controles de edición y formas de búsqueda. */
+    public enum Category { NUMBER, BOOLEAN, DATE, TIMESTAMP, TIME, UUID, TEXT, OTHER }
+
+    public static final TypeCodec INT8 = new Int8Codec();
+    public static final TypeCodec INT4 = new Int4Codec("int4", Integer.MIN_VALUE, Integer.MAX_VALUE);
+    public static final TypeCodec INT2 = new Int4Codec("int2", Short.MIN_VALUE, Short.MAX_VALUE);
+    public static final TypeCodec FLOAT8 = new Float8Codec();
+    public static final TypeCodec FLOAT4 = new Float4Codec();
+    public static final TypeCodec NUMERIC = new NumericCodec();
+    public static final TypeCodec BOOL = new BoolCodec();
+    public static final TypeCodec DATE = new DateCodec();
+    public static final TypeCodec TIMESTAMP = new TimestampCodec("timestamp");
+    public static final TypeCodec TIMESTAMPTZ = new TimestampCodec("timestamptz");
+    public static final TypeCodec TIME = new TimeCodec();
+    public static final TypeCodec UUID_CODEC = new UuidCodec();
+    public static final TypeCodec TEXT = new TextCodec();
+    public static final TypeCodec OTHER = new OtherCodec();
+
+    private final String castType;
+    private final Category category;
+    private final StorageType storageType;
+    private final Class<?> javaClass;
+    private final int sqlType;
+
+    TypeCodec(String castType, Category category, StorageType storageType, Class<?> javaClass, int sqlType) {
+        this.castType = castType;
+        this.category = category;
+        this.storageType = storageType;
+        this.javaClass = javaClass;
+        this.sqlType = sqlType;
+    }
+
+    /**
+     * Elige el codec de una columna. El OID (0 si se desconoce) manda; si no lo hay se
+     * usa el nombre exacto del tipo y, en último caso, el código de java.sql.Types.
+     * Un OID que no es de los tipos base (dominios, enumerados) da OTHER.
+     */
+    public static TypeCodec resolve(int oid, int sqlType, String typeName) {
+        if (oid != 0) {
+            TypeCodec byOid = byOid(oid);
+            return byOid != null ? byOid : OTHER;
+        }
+        TypeCodec byName = byName(typeName == null ? "" : typeName.toLowerCase(Locale.ROOT));
+        return byName != null ? byName : bySqlType(sqlType);
+    }
+
+    // OID de los tipos base de PostgreSQL (pg_type.oid, fijos entre versiones)
+    private static TypeCodec byOid(int oid) {
+        switch (oid) {
+            case 20: return INT8;
+            case 23: return INT4;
+            case 21: return INT2;
+            case 701: return FLOAT8;
+            case 700: return FLOAT4;
+            case 1700: return NUMERIC;
+            case 16: return BOOL;
+            case 1082: return DATE;
+            case 1114: return TIMESTAMP;
+            case 1184: return TIMESTAMPTZ;
+            case 1083: return TIME;
+            case 2950: return UUID_CODEC;
+            case 25: case 1043: case 1042: case 18: case 19: return TEXT;
+            default: return null;
+        }
+    }
+
+    private static TypeCodec byName(String typeName) {
+        switch (typeName) {
+            case "int8": case "bigint": case "bigserial": case "serial8":
+                return INT8;
+            case "int4": case "integer": case "int": case "serial": case "serial4":
+                return INT4;
+            case "int2": case "smallint": case "smallserial": case "serial2":
+                return INT2;
+            case "float8": case "double precision":
+                return FLOAT8;
+            case "float4": case "real":
+                return FLOAT4;
+            case "numeric": case "decimal":
+                return NUMERIC;
+            case "bool": case "boolean":
+                return BOOL;
+            case "date":
+                return DATE;
+            case "timestamp": case "timestamp without time zone":
+                return TIMESTAMP;
+            case "timestamptz": case "timestamp with time zone":
+                return TIMESTAMPTZ;
+            case "time": case "time without time zone":
+                return TIME;
+            case "uuid":
+                return UUID_CODEC;
+            case "text": case "varchar": case "character varying": case "bpchar": case "char":
+            case "character": case "name":
+                return TEXT;
+            case "":
+                return null;
+            default:
+                // Nombre conocido por el servidor pero sin codec propio: interval, point, json...
+                return OTHER;
+        }
+    }
+
+    private static TypeCodec bySqlType(int sqlType) {
+        switch (sqlType) {
+            case Types.BIGINT: return INT8;
+            case Types.INTEGER: return INT4;
+            case Types.SMALLINT: case Types.TINYINT: return INT2;
+            case Types.DOUBLE: case Types.FLOAT: return FLOAT8;
+            case Types.REAL: return FLOAT4;
+            case Types.NUMERIC: case Types.DECIMAL: return NUMERIC;
+            case Types.BOOLEAN: return BOOL;
+            case Types.DATE: return DATE;
+            case Types.TIMESTAMP: return TIMESTAMP;
+            case Types.TIMESTAMP_WITH_TIMEZONE: return TIMESTAMPTZ;
+            case Types.TIME: return TIME;
+            case Types.CHAR: case Types.VARCHAR: case Types.LONGVARCHAR: case Types.NCHAR: case Types.NVARCHAR:
+                return TEXT;
+            default:
+                return OTHER;
+        }
+    }
+
+    /** Tipo para CAST en SQL, o null si hay que usar el de la columna (tipos sin codec propio). */
+    public String getCastType() { return castType; }
+    public Category getCategory() { return category; }
+    /** Representación en memoria dentro de TableData. */
+    public StorageType getStorageType() { return storageType; }
+    public Class<?> getJavaClass() { return javaClass; }
+
+    public boolean isNumeric() { return category == Category.NUMBER; }
+    public boolean isDateLike() { return category == Category.DATE || category == Category.TIMESTAMP; }
+
+    /**
+     * Convierte el texto del usuario (o de un CSV). Vacío o en blanco es NULL.
+     * Lanza IllegalArgumentException si el texto no es válido para el tipo.
+     */
+    public Object parse(String text) {
+        if (text == null || text.isBlank()) return null;
+        try {
+            return parseText(text);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Valor inválido para tipo " + describe() + ": " + text, e);
+        }
+    }
+
+    /** Texto para mostrar o editar el valor; "" para NULL. */
+    public String format(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    /** Asigna el parámetro con el setter del tipo; un valor de otra clase va con setObject. */
+    public void bind(PreparedStatement pstmt, int index, Object value) throws SQLException {
+        if (value == null) {
+            pstmt.setNull(index, sqlType);
+        } else if (javaClass.isInstance(value)) {
+            bindTyped(pstmt, index, value);
+        } else {
+            pstmt.setObject(index, value);
+        }
+    }
+
+    /** Lee la columna con el getter del tipo; null si es NULL. */
+    public abstract Object read(ResultSet rs, int index) throws SQLException;
+
+    protected abstract Object parseText(String text);
+    protected abstract void bindTyped(PreparedStatement pstmt, int index, Object value) throws SQLException;
+
+    private String describe() {
+        return castType != null ? castType : "texto";
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+
+    private static final class Int8Codec extends TypeCodec {
+        Int8Codec() { super("int8", Category.NUMBER, StorageType.LONG, Long.class, Types.BIGINT); }
+        @Override protected Object parseText(String text) { return Long.parseLong(text.trim()); }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setLong(i, (Long) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException {
+            long v = rs.getLong(i);
+            return rs.wasNull() ? null : v;
+        }
+    }
+
+    private static final class Int4Codec extends TypeCodec {
+        private final int min;
+        private final int max;
+
+        Int4Codec(String castType, int min, int max) {
+            super(castType, Category.NUMBER, StorageType.INT, Integer.class,
+                    max == Short.MAX_VALUE ? Types.SMALLINT : Types.INTEGER);
+            this.min = min;
+            this.max = max;
+        }
+        @Override protected Object parseText(String text) {
+            int v = Integer.parseInt(text.trim());
+            if (v < min || v > max) throw new NumberFormatException("fuera de rango");
+            return v;
+        }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setInt(i, (Integer) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException {
+            int v = rs.getInt(i);
+            return rs.wasNull() ? null : v;
+        }
+    }
+
+    private static final class Float8Codec extends TypeCodec {
+        Float8Codec() { super("float8", Category.NUMBER, StorageType.DOUBLE, Double.class, Types.DOUBLE); }
+        @Override protected Object parseText(String text) { return Double.parseDouble(text.trim()); }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setDouble(i, (Double) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException {
+            double v = rs.getDouble(i);
+            return rs.wasNull() ? null : v;
+        }
+    }
+
+    private static final class Float4Codec extends TypeCodec {
+        Float4Codec() { super("float4", Category.NUMBER, StorageType.FLOAT, Float.class, Types.REAL); }
+        @Override protected Object parseText(String text) { return Float.parseFloat(text.trim()); }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setFloat(i, (Float) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException {
+            float v = rs.getFloat(i);
+            return rs.wasNull() ? null : v;
+        }
+    }
+
+    private static final class NumericCodec extends TypeCodec {
+        NumericCodec() { super("numeric", Category.NUMBER, StorageType.OBJECT, BigDecimal.class, Types.NUMERIC); }
+        @Override protected Object parseText(String text) { return new BigDecimal(text.trim()); }
+        @Override public String format(Object value) {
+            return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : super.format(value);
+        }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setBigDecimal(i, (BigDecimal) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException { return rs.getBigDecimal(i); }
+    }
+
+    private static final class BoolCodec extends TypeCodec {
+        BoolCodec() { super("bool", Category.BOOLEAN, StorageType.BOOLEAN, Boolean.class, Types.BOOLEAN); }
+        // Las mismas formas que acepta PostgreSQL, más sí/no
+        @Override protected Object parseText(String text) {
+            switch (text.trim().toLowerCase(Locale.ROOT)) {
+                case "t": case "true": case "1": case "y": case "yes": case "on": case "s": case "si": case "sí":
+                    return Boolean.TRUE;
+                case "f": case "false": case "0": case "n": case "no": case "off":
+                    return Boolean.FALSE;
+                default:
+                    throw new IllegalArgumentException("no es un booleano");
+            }
+        }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setBoolean(i, (Boolean) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException {
+            boolean v = rs.getBoolean(i);
+            return rs.wasNull() ? null : v;
+        }
+    }
+
+    private static final class DateCodec extends TypeCodec {
+        DateCodec() { super("date", Category.DATE, StorageType.DATE, java.sql.Date.class, Types.DATE); }
+        @Override protected Object parseText(String text) { return java.sql.Date.valueOf(text.trim()); }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setDate(i, (java.sql.Date) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException { return rs.getDate(i); }
+    }
+
+    private static final class TimestampCodec extends TypeCodec {
+        // Fecha y hora con desplazamiento: +01, +0100, +01:00 o Z (como los escribe PostgreSQL o ISO)
+        private static final DateTimeFormatter WITH_OFFSET = new DateTimeFormatterBuilder()
+                .append(DateTimeFormatter.ISO_LOCAL_DATE)
+                .appendLiteral(' ')
+                .append(DateTimeFormatter.ISO_LOCAL_TIME)
+                .appendPattern("[XXX][XX][X]")
+                .toFormatter(Locale.ROOT);
+        private final boolean withZone;
+
+        TimestampCodec(String castType) {
+            super(castType, Category.TIMESTAMP, StorageType.TIMESTAMP, java.sql.Timestamp.class,
+                    "timestamptz".equals(castType) ? Types.TIMESTAMP_WITH_TIMEZONE : Types.TIMESTAMP);
+            withZone = "timestamptz".equals(castType);
+        }
+        // Acepta "AAAA-MM-DD hh:mm:ss[.f]", con T como en ISO, o solo la fecha (medianoche).
+        // En timestamptz también con desplazamiento, que se pasa al instante que indica
+        @Override protected Object parseText(String text) {
+            String t = text.trim();
+            if (t.length() == 10) return java.sql.Timestamp.valueOf(t + " 00:00:00");
+            if (t.length() > 10 && t.charAt(10) == 'T') t = t.substring(0, 10) + ' ' + t.substring(11);
+            if (withZone && hasOffset(t)) {
+                return java.sql.Timestamp.from(OffsetDateTime.parse(t.toUpperCase(Locale.ROOT), WITH_OFFSET).toInstant());
+            }
+            return java.sql.Timestamp.valueOf(t);
+        }
+        private static boolean hasOffset(String t) {
+            char last = t.charAt(t.length() - 1);
+            return last == 'Z' || last == 'z' || t.indexOf('+', 10) >= 0 || t.indexOf('-', 10) >= 0;
+        }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setTimestamp(i, (java.sql.Timestamp) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException { return rs.getTimestamp(i); }
+    }
+
+    private static final class TimeCodec extends TypeCodec {
+        TimeCodec() { super("time", Category.TIME, StorageType.OBJECT, java.sql.Time.class, Types.TIME); }
+        @Override protected Object parseText(String text) {
+            String t = text.trim();
+            return java.sql.Time.valueOf(t.length() == 5 ? t + ":00" : t);
+        }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setTime(i, (java.sql.Time) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException { return rs.getTime(i); }
+    }
+
+    private static final class UuidCodec extends TypeCodec {
+        UuidCodec() { super("uuid", Category.UUID, StorageType.OBJECT, UUID.class, Types.OTHER); }
+        @Override protected Object parseText(String text) { return UUID.fromString(text.trim()); }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setObject(i, v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException { return rs.getObject(i); }
+    }
+
+    private static final class TextCodec extends TypeCodec {
+        TextCodec() { super("text", Category.TEXT, StorageType.TEXT, String.class, Types.VARCHAR); }
+        @Override protected Object parseText(String text) { return text; }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setString(i, (String) v);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException { return rs.getString(i); }
+    }
+
+    /** Tipos sin codec propio: el texto viaja sin tipo (Types.OTHER) y lo interpreta el servidor. */
+    private static final class OtherCodec extends TypeCodec {
+        OtherCodec() { super(null, Category.OTHER, StorageType.OBJECT, String.class, Types.OTHER); }
+        @Override protected Object parseText(String text) { return text; }
+        @Override protected void bindTyped(PreparedStatement p, int i, Object v) throws SQLException {
+            p.setObject(i, v, Types.OTHER);
+        }
+        @Override public Object read(ResultSet rs, int i) throws SQLException { return rs.getObject(i); }
+    }
+}
@@ -0,0 +1,525 @@
+package presentacion;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.geometry.VPos;
+import javafx.scene.Cursor;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import modelo.ColumnInfo;
+import modelo.TypeCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Vista de solo lectura que pinta las celdas visibles directamente en un Canvas. La
+ * TableView crea un nodo por celda visible y los recoloca al desplazarse, lo que con
+ * cientos de columnas en una pantalla grande no da abasto; aquí cada fotograma pinta
+ * solo lo que cabe en pantalla, sea cual sea el número de columnas o de filas.
+ *
+ * Lee del mismo TableRowModel que la tabla y usa el mismo formato por tipo. Las columnas
+ * se ensanchan arrastrando el borde de la cabecera; las filas se seleccionan con el ratón
+ * (Mayús para un rango) o el teclado, y Ctrl+C las copia separadas por tabuladores.
+ */
+final class CanvasGrid extends Region {
+    private static final double PADDING = 4;
+    // Distancia al borde de una cabecera a la que se puede arrastrar para cambiar el ancho
+    private static final double RESIZE_MARGIN = 4;
+    private static final double MIN_COLUMN_WIDTH = 30;
+    // Píxeles que avanza la vista en horizontal con las flechas
+    private static final double HORIZONTAL_STEP = 40;
+    // Filas antes del final a las que se pide la página siguiente, como en la tabla
+    private static final int PREFETCH_ROWS = 50;
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color STRIPE = Color.web("#f5f7f8");
+    private static final Color HEADER = Color.web("#e4e8eb");
+    private static final Color GRID_LINE = Color.web("#d0d5d9");
+    private static final Color TEXT = Color.web("#2c3e50");
+    private static final Color SELECTED = Color.web("#3498db");
+    private static final Color HIGHLIGHT = Color.web("#fff3b0");
+
+    /** Columna tal como se pinta: ancho, alineación y formato de su tipo. */
+    private static final class GridColumn {
+        final String name;
+        final TypeCodec codec;
+        final TextAlignment alignment;
+        final Function<Object, String> format;
+        // Caché propia de la rejilla: la de las celdas de la tabla es de su factoría
+        final TypedCells.TextCache cache = new TypedCells.TextCache();
+        double width;
+
+        GridColumn(ColumnInfo info) {
+            name = info.getName();
+            codec = info.getCodec();
+            Pos pos = TypedCells.alignmentFor(info);
+            alignment = pos == Pos.CENTER_RIGHT ? TextAlignment.RIGHT
+                    : pos == Pos.CENTER ? TextAlignment.CENTER : TextAlignment.LEFT;
+            format = TypedCells.formatterFor(info);
+            width = Math.max(defaultWidth(info), name.length() * 8 + 2 * PADDING);
+        }
+
+        private static double defaultWidth(ColumnInfo info) {
+            switch (info.getCodec().getCategory()) {
+                case NUMBER: return 90;
+                case BOOLEAN: return 50;
+                case DATE: return 110;
+                case TIMESTAMP: return 170;
+                case TIME: return 90;
+                case UUID: return 290;
+                default: return 160;
+            }
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar vBar = new ScrollBar();
+    private final ScrollBar hBar = new ScrollBar();
+    private final Font font = Font.getDefault();
+    private final Font headerFont = Font.font(font.getFamily(), FontWeight.BOLD, font.getSize());
+    private final double rowHeight = Math.ceil(font.getSize() * 1.8);
+    private final double headerHeight = rowHeight + 4;
+    private final ListChangeListener<Integer> rowsListener = this::rowsChanged;
+
+    private TableRowModel rows;
+    private List<GridColumn> columns = new ArrayList<>();
+    private List<String> signature = new ArrayList<>();
+    // lefts[c] es la x de la columna c en el contenido; lefts[n] es el ancho total
+    private double[] lefts = new double[1];
+    // Filas seleccionadas: de anchor a lead, en cualquier sentido (-1 = ninguna)
+    private int anchor = -1;
+    private int lead = -1;
+    private int resizing = -1;
+    private double resizeStartX;
+    private double resizeStartWidth;
+    private Set<Integer> highlighted = Collections.emptySet();
+    private Runnable onNearEnd;
+    private boolean paintQueued;
+
+    CanvasGrid() {
+        vBar.setOrientation(Orientation.VERTICAL);
+        hBar.setOrientation(Orientation.HORIZONTAL);
+        getChildren().addAll(canvas, vBar, hBar);
+        setFocusTraversable(true);
+        vBar.valueProperty().addListener((obs, old, val) -> refresh());
+        hBar.valueProperty().addListener((obs, old, val) -> refresh());
+        canvas.addEventHandler(MouseEvent.MOUSE_MOVED, this::mouseMoved);
+        canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+        canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+        canvas.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> resizing = -1);
+        addEventHandler(ScrollEvent.SCROLL, this::scrolled);
+        addEventHandler(KeyEvent.KEY_PRESSED, this::keyPressed);
+    }
+
+    /**
+     * Muestra las filas del modelo. Si las columnas son las mismas de antes se
+     * conservan sus anchos; la selección y el desplazamiento vuelven al principio.
+     */
+    void setRows(TableRowModel model, List<ColumnInfo> infos) {
+        if (rows != null) rows.removeListener(rowsListener);
+        rows = model;
+        rows.addListener(rowsListener);
+
+        List<String> wanted = new ArrayList<>(infos.size());
+        for (ColumnInfo info : infos) {
+            wanted.add(info.getName() + ":" + info.getType());
+        }
+        if (!wanted.equals(signature)) {
+            columns = new ArrayList<>(infos.size());
+            for (ColumnInfo info : infos) {
+                columns.add(new GridColumn(info));
+            }
+            signature = wanted;
+            updateLefts();
+        }
+        anchor = -1;
+        lead = -1;
+        vBar.setValue(0);
+        hBar.setValue(0);
+        updateScrollBars();
+        refresh();
+    }
+
+    /** Filas a resaltar por número de fila; el conjunto lo mantiene quien llama. */
+    void setHighlighted(Set<Integer> highlighted) {
+        this.highlighted = highlighted;
+    }
+
+    /** Se llama al pintar cerca de la última fila cargada, para pedir la página siguiente. */
+    void setOnNearEnd(Runnable onNearEnd) {
+        this.onNearEnd = onNearEnd;
+    }
+
+    /** Posición de la fila seleccionada (la última pulsada), o -1. */
+    int getSelectedIndex() {
+        return lead;
+    }
+
+    void select(int index) {
+        anchor = index;
+        lead = index;
+        if (index >= 0) ensureVisible(index);
+        refresh();
+    }
+
+    int getFirstVisibleRow() {
+        return firstRow();
+    }
+
+    int getLastVisibleRow() {
+        return rows == null ? -1 : Math.min(rows.size(), firstRow() + visibleRowCount()) - 1;
+    }
+
+    /** Repinta en el próximo pulso; varias peticiones seguidas se juntan en un solo pintado. */
+    void refresh() {
+        if (paintQueued) return;
+        paintQueued = true;
+        Platform.runLater(() -> {
+            paintQueued = false;
+            paint();
+        });
+    }
+
+    /**
+     * Lleva anchor y lead a la posición nueva de su fila, como hace la TableView con su
+     * selección: las filas añadidas o quitadas antes las desplazan, una reordenación las
+     * busca por número de fila y una edición en su sitio conserva la posición.
+     */
+    private void rowsChanged(ListChangeListener.Change<? extends Integer> c) {
+        while (c.next()) {
+            anchor = remap(anchor, c);
+            lead = remap(lead, c);
+        }
+        int last = rows.size() - 1;
+        anchor = Math.min(anchor, last);
+        lead = Math.min(lead, last);
+        if (anchor < 0) anchor = lead;
+        if (lead < 0) lead = anchor;
+        updateScrollBars();
+        refresh();
+    }
+
+    private static int remap(int pos, ListChangeListener.Change<? extends Integer> c) {
+        if (pos < 0) return pos;
+        if (c.wasPermutated()) {
+            return pos >= c.getFrom() && pos < c.getTo() ? c.getPermutation(pos) : pos;
+        }
+        int from = c.getFrom();
+        int removed = c.getRemovedSize();
+        if (pos < from) return pos;
+        if (pos >= from + removed) return pos - removed + c.getAddedSize();
+        if (c.wasAdded()) {
+            int moved = c.getAddedSubList().indexOf(c.getRemoved().get(pos - from));
+            if (moved >= 0) return from + moved;
+            // Misma posición con otra versión de la fila (editada o releída)
+            if (c.getAddedSize() == removed) return pos;
+        }
+        // Fila borrada: la selección pasa a la que ocupa ahora su lugar
+        return from;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        double barWidth = vBar.prefWidth(-1);
+        double barHeight = hBar.prefHeight(-1);
+        vBar.resizeRelocate(width - barWidth, 0, barWidth, Math.max(0, height - barHeight));
+        hBar.resizeRelocate(0, height - barHeight, Math.max(0, width - barWidth), barHeight);
+        canvas.setWidth(Math.max(0, width - barWidth));
+        canvas.setHeight(Math.max(0, height - barHeight));
+        updateScrollBars();
+        paint();
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 600;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 400;
+    }
+
+    private void updateLefts() {
+        lefts = new double[columns.size() + 1];
+        for (int c = 0; c < columns.size(); c++) {
+            lefts[c + 1] = lefts[c] + columns.get(c).width;
+        }
+    }
+
+    private void updateScrollBars() {
+        int total = rows == null ? 0 : rows.size();
+        int visible = visibleRowCount();
+        vBar.setMax(Math.max(0, total - visible));
+        vBar.setVisibleAmount(Math.min(visible, Math.max(1, total)));
+        vBar.setBlockIncrement(Math.max(1, visible - 1));
+        vBar.setUnitIncrement(1);
+        vBar.setValue(Math.min(vBar.getValue(), vBar.getMax()));
+
+        double viewWidth = canvas.getWidth();
+        double contentWidth = lefts[lefts.length - 1];
+        hBar.setMax(Math.max(0, contentWidth - viewWidth));
+        hBar.setVisibleAmount(Math.min(viewWidth, Math.max(1, contentWidth)));
+        hBar.setBlockIncrement(Math.max(HORIZONTAL_STEP, viewWidth - HORIZONTAL_STEP));
+        hBar.setUnitIncrement(HORIZONTAL_STEP);
+        hBar.setValue(Math.min(hBar.getValue(), hBar.getMax()));
+    }
+
+    private int firstRow() {
+        return (int) vBar.getValue();
+    }
+
+    private int visibleRowCount() {
+        return Math.max(1, (int) ((canvas.getHeight() - headerHeight) / rowHeight));
+    }
+
+    // Primera columna que asoma en la x indicada del contenido (búsqueda binaria)
+    private int columnAt(double x) {
+        int low = 0;
+        int high = columns.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lefts[mid] <= x) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void paint() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        g.setFill(BACKGROUND);
+        g.fillRect(0, 0, width, height);
+        if (rows == null || columns.isEmpty()) return;
+
+        int first = firstRow();
+        int last = Math.min(rows.size(), first + visibleRowCount() + 1);
+        double offset = hBar.getValue();
+        int firstColumn = columnAt(offset);
+        int low = Math.min(anchor, lead);
+        int high = Math.max(anchor, lead);
+
+        // Fondo de cada fila: selección, resaltado de cambios o rayado alterno
+        for (int r = first; r < last; r++) {
+            double y = headerHeight + (r - first) * rowHeight;
+            boolean selected = low >= 0 && r >= low && r <= high;
+            g.setFill(selected ? SELECTED : highlighted.contains(rows.getId(r)) ? HIGHLIGHT
+                    : r % 2 == 0 ? BACKGROUND : STRIPE);
+            g.fillRect(0, y, width, rowHeight);
+        }
+
+        // Texto por columnas: un recorte por columna, no por celda
+        g.setFont(font);
+        g.setTextBaseline(VPos.CENTER);
+        g.setStroke(GRID_LINE);
+        g.setLineWidth(1);
+        for (int c = firstColumn; c < columns.size() && lefts[c] - offset < width; c++) {
+            GridColumn column = columns.get(c);
+            double x = lefts[c] - offset;
+            g.save();
+            g.beginPath();
+            g.rect(x, headerHeight, column.width, height - headerHeight);
+            g.clip();
+            g.setTextAlign(column.alignment);
+            double textX = textX(column, x);
+            for (int r = first; r < last; r++) {
+                String text = cellText(column, c, rows.getId(r));
+                if (text.isEmpty()) continue;
+                boolean selected = low >= 0 && r >= low && r <= high;
+                g.setFill(selected ? Color.WHITE : TEXT);
+                g.fillText(text, textX, headerHeight + (r - first) * rowHeight + rowHeight / 2);
+            }
+            g.restore();
+            g.strokeLine(x + column.width - 0.5, headerHeight, x + column.width - 0.5, height);
+        }
+
+        // Cabecera encima, con el mismo desplazamiento horizontal
+        g.setFill(HEADER);
+        g.fillRect(0, 0, width, headerHeight);
+        g.setFont(headerFont);
+        for (int c = firstColumn; c < columns.size() && lefts[c] - offset < width; c++) {
+            GridColumn column = columns.get(c);
+            double x = lefts[c] - offset;
+            g.save();
+            g.beginPath();
+            g.rect(x, 0, column.width, headerHeight);
+            g.clip();
+            g.setTextAlign(column.alignment);
+            g.setFill(TEXT);
+            g.fillText(column.name, textX(column, x), headerHeight / 2);
+            g.restore();
+            g.strokeLine(x + column.width - 0.5, 0, x + column.width - 0.5, headerHeight);
+        }
+        g.strokeLine(0, headerHeight - 0.5, width, headerHeight - 0.5);
+
+        if (onNearEnd != null && last >= rows.size() - PREFETCH_ROWS) {
+            onNearEnd.run();
+        }
+    }
+
+    private static double textX(GridColumn column, double x) {
+        switch (column.alignment) {
+            case RIGHT: return x + column.width - PADDING;
+            case CENTER: return x + column.width / 2;
+            default: return x + PADDING;
+        }
+    }
+
+    // Texto de la celda, formateado una vez por versión de fila como en las celdas de la tabla
+    private String cellText(GridColumn column, int c, int id) {
+        String text = column.cache.get(rows, id);
+        if (text == null) {
+            Object value = rows.getValue(id, c);
+            text = value == null ? "" : column.format.apply(value);
+            column.cache.put(id, text);
+        }
+        return text;
+    }
+
+    // Columna cuyo borde derecho está bajo el ratón en la cabecera, o -1
+    private int borderAt(double x, double y) {
+        if (y > headerHeight || columns.isEmpty()) return -1;
+        double contentX = x + hBar.getValue();
+        int c = columnAt(contentX);
+        if (Math.abs(lefts[c + 1] - contentX) <= RESIZE_MARGIN) return c;
+        if (c > 0 && Math.abs(lefts[c] - contentX) <= RESIZE_MARGIN) return c - 1;
+        return -1;
+    }
+
+    private int rowAt(double y) {
+        int row = firstRow() + (int) Math.floor((y - headerHeight) / rowHeight);
+        return Math.max(0, Math.min(rows.size() - 1, row));
+    }
+
+    private void mouseMoved(MouseEvent e) {
+        canvas.setCursor(borderAt(e.getX(), e.getY()) >= 0 ? Cursor.H_RESIZE : Cursor.DEFAULT);
+    }
+
+    private void mousePressed(MouseEvent e) {
+        requestFocus();
+        int border = borderAt(e.getX(), e.getY());
+        if (border >= 0) {
+            resizing = border;
+            resizeStartX = e.getX();
+            resizeStartWidth = columns.get(border).width;
+            return;
+        }
+        if (e.getY() < headerHeight || rows == null || rows.isEmpty()) return;
+        int row = rowAt(e.getY());
+        if (!e.isShiftDown() || anchor < 0) anchor = row;
+        lead = row;
+        refresh();
+    }
+
+    private void mouseDragged(MouseEvent e) {
+        if (resizing >= 0) {
+            columns.get(resizing).width = Math.max(MIN_COLUMN_WIDTH, resizeStartWidth + e.getX() - resizeStartX);
+            updateLefts();
+            updateScrollBars();
+            refresh();
+        } else if (anchor >= 0 && rows != null && !rows.isEmpty()) {
+            lead = rowAt(e.getY());
+            ensureVisible(lead);
+            refresh();
+        }
+    }
+
+    private void scrolled(ScrollEvent e) {
+        vBar.setValue(clamp(vBar.getValue() - e.getDeltaY() / rowHeight, vBar.getMax()));
+        hBar.setValue(clamp(hBar.getValue() - e.getDeltaX(), hBar.getMax()));
+        e.consume();
+    }
+
+    private void keyPressed(KeyEvent e) {
+        if (e.isShortcutDown() && e.getCode() == KeyCode.C) {
+            copySelection();
+            e.consume();
+            return;
+        }
+        if (rows == null || rows.isEmpty()) return;
+        int page = visibleRowCount();
+        int target;
+        switch (e.getCode()) {
+            case UP: target = lead - 1; break;
+            case DOWN: target = lead + 1; break;
+            case PAGE_UP: target = lead - page; break;
+            case PAGE_DOWN: target = lead + page; break;
+            case HOME: target = 0; break;
+            case END: target = rows.size() - 1; break;
+            case LEFT:
+                hBar.setValue(clamp(hBar.getValue() - HORIZONTAL_STEP, hBar.getMax()));
+                e.consume();
+                return;
+            case RIGHT:
+                hBar.setValue(clamp(hBar.getValue() + HORIZONTAL_STEP, hBar.getMax()));
+                e.consume();
+                return;
+            default:
+                return;
+        }
+        target = Math.max(0, Math.min(rows.size() - 1, target));
+        if (!e.isShiftDown() || anchor < 0) anchor = target;
+        lead = target;
+        ensureVisible(target);
+        refresh();
+        e.consume();
+    }
+
+    private void ensureVisible(int row) {
+        int first = firstRow();
+        int visible = visibleRowCount();
+        if (row < first) {
+            vBar.setValue(row);
+        } else if (row >= first + visible) {
+            vBar.setValue(Math.min(vBar.getMax(), row - visible + 1));
+        }
+    }
+
+    private static double clamp(double value, double max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    /**
+     * Copia las filas seleccionadas como texto separado por tabuladores, con el texto
+     * que usa el formulario (sin separadores de miles ni recortes) para poder pegarlo.
+     */
+    private void copySelection() {
+        if (rows == null || anchor < 0 || lead < 0) return;
+        StringBuilder text = new StringBuilder();
+        for (int r = Math.min(anchor, lead); r <= Math.max(anchor, lead); r++) {
+            int id = rows.getId(r);
+            for (int c = 0; c < columns.size(); c++) {
+                if (c > 0) text.append('\t');
+                String value = columns.get(c).codec.format(rows.getValue(id, c));
+                text.append(value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+            }
+            text.append('\n');
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(text.toString());
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+}
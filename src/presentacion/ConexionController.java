@@ -21,6 +21,7 @@ public class ConexionController {
     @FXML private Button btnConnect;
 
     private DatabaseConnection dbConn = new DatabaseConnection();
+    private final QueryRunner catalogRunner = new QueryRunner();
 
     @FXML
     public void initialize() {
@@ -36,8 +37,16 @@ public class ConexionController {
                 ok ? "Conexión exitosa" : "Error al conectar");
         alert.showAndWait();
         if (ok) {
-            cbTables.setItems(FXCollections.observableArrayList(dbConn.getTables()));
+            // Todo el catálogo en segundo plano: al abrir una tabla su estructura ya estará en caché
+            cbTables.setItems(FXCollections.emptyObservableList());
+            catalogRunner.submit(dbConn::preloadCatalog,
+                    tables -> cbTables.setItems(FXCollections.observableArrayList(tables)),
+                    error -> {
+                        System.err.println("Error al cargar el catálogo: " + error.getMessage());
+                        cbTables.setItems(FXCollections.observableArrayList(dbConn.getTables()));
+                    });
         } else {
+            catalogRunner.cancel();
             cbTables.setItems(FXCollections.emptyObservableList());
         }
     }
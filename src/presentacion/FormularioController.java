@@ -5,7 +5,8 @@ import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import modelo.ColumnInfo;
-import modelo.TableData;
+import modelo.TableSchema;
+import logica.BatchWriter;
 import logica.DatabaseConnection;
 
 import java.time.LocalDate;
@@ -19,13 +20,17 @@ public class FormularioController {
 
     private Stage stage;
     private String tableName;
-    private TableData tableStructure;
+    private TableSchema tableStructure;
     private DatabaseConnection dbConn;
     private boolean editMode;
     private ArrayList<Object> rowValues;
     private Map<String, Control> fieldMap = new HashMap<>();
+    // En modo lote los cambios se encolan aquí en lugar de ejecutarse al aceptar
+    private BatchWriter batchWriter;
+    // Fila tal como quedó en la base de datos tras aceptar; null si no se guardó nada
+    private ArrayList<Object> savedRow;
 
-    public void init(Stage stage, String tableName, TableData tableStructure,
+    public void init(Stage stage, String tableName, TableSchema tableStructure,
                      DatabaseConnection dbConn, boolean editMode, ArrayList<Object> rowValues) {
         this.stage = stage;
         this.tableName = tableName;
@@ -36,6 +41,16 @@ public class FormularioController {
         buildForm();
     }
 
+    /** Activa el modo lote: Aceptar encola el cambio y no toca la base de datos. */
+    public void setBatchWriter(BatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+    }
+
+    /** Fila guardada (con defaults y valores de triggers), o null si se canceló, falló o fue a un lote. */
+    public ArrayList<Object> getSavedRow() {
+        return savedRow;
+    }
+
     private void buildForm() {
         fieldsContainer.getChildren().clear();
         fieldMap.clear();
@@ -55,7 +70,7 @@ public class FormularioController {
 
             if (editMode && rowValues != null && colIndex < rowValues.size()) {
                 Object value = rowValues.get(colIndex);
-                setControlValue(input, value);
+                setControlValue(input, col, value);
                 if (col.isPrimaryKey() || col.isAutoIncrement()) {
                     input.setDisable(true);
                 }
@@ -68,31 +83,39 @@ public class FormularioController {
     }
 
     private Control createInputControl(ColumnInfo col) {
-        String type = col.getType().toUpperCase();
-        if (type.contains("INT") || type.contains("DECIMAL") || type.contains("NUMERIC") ||
-            type.contains("FLOAT") || type.contains("DOUBLE")) {
-            TextField tf = new TextField();
-            tf.setPromptText("Número");
-            return tf;
-        } else if (type.contains("DATE") || type.contains("TIMESTAMP")) {
-            DatePicker dp = new DatePicker();
-            dp.setPromptText("AAAA-MM-DD");
-            return dp;
-        } else if (type.contains("BOOLEAN") || type.contains("BIT")) {
-            CheckBox cb = new CheckBox();
-            return cb;
-        } else {
-            TextField tf = new TextField();
-            tf.setPromptText("Texto");
-            return tf;
+        switch (col.getCodec().getCategory()) {
+            case NUMBER: {
+                TextField tf = new TextField();
+                tf.setPromptText("Número");
+                return tf;
+            }
+            case DATE:
+            case TIMESTAMP: {
+                DatePicker dp = new DatePicker();
+                dp.setPromptText("AAAA-MM-DD");
+                return dp;
+            }
+            case BOOLEAN:
+                return new CheckBox();
+            case TEXT: {
+                TextField tf = new TextField();
+                tf.setPromptText("Texto");
+                return tf;
+            }
+            default: {
+                // interval, point, json...: se escribe en la sintaxis del propio tipo
+                TextField tf = new TextField();
+                tf.setPromptText(col.getType());
+                return tf;
+            }
         }
     }
 
-    private void setControlValue(Control control, Object value) {
+    private void setControlValue(Control control, ColumnInfo col, Object value) {
         if (value == null) return;
         try {
             if (control instanceof TextField) {
-                ((TextField) control).setText(value.toString());
+                ((TextField) control).setText(col.getCodec().format(value));
             } else if (control instanceof DatePicker) {
                 DatePicker dp = (DatePicker) control;
                 if (value instanceof java.sql.Date) {
@@ -117,7 +140,7 @@ public class FormularioController {
             String text = ((TextField) control).getText().trim();
             if (text.isEmpty()) return null;
             try {
-                return DatabaseConnection.parseValue(text, col.getType());
+                return col.getCodec().parse(text);
             } catch (IllegalArgumentException e) {
                 throw new RuntimeException("Error en columna " + col.getName() + ": " + e.getMessage());
             }
@@ -200,9 +223,15 @@ public class FormularioController {
                 valoresUpdate.add(valor);
             }
 
+            if (batchWriter != null) {
+                batchWriter.queueUpdate(tableName, valoresUpdate, columnasUpdate, pkCol, pkVal);
+                stage.close();
+                return;
+            }
+
             // Llamar a la actualización con las columnas editables
-            boolean exito = dbConn.updateRecord(tableName, valoresUpdate, columnasUpdate, pkCol, pkVal);
-            if (exito) {
+            savedRow = dbConn.updateRecord(tableName, valoresUpdate, columnasUpdate, pkCol, pkVal);
+            if (savedRow != null) {
                 new Alert(Alert.AlertType.INFORMATION, "Operación exitosa").showAndWait();
                 stage.close();
             } else {
@@ -211,9 +240,15 @@ public class FormularioController {
             return; // Salir para no ejecutar la inserción
         }
 
+        if (batchWriter != null) {
+            batchWriter.queueInsert(tableName, valores, columnas);
+            stage.close();
+            return;
+        }
+
         // Si llegamos aquí (modo inserción), ejecutamos la inserción
-        boolean exito = dbConn.insertRecord(tableName, valores, columnas);
-        if (exito) {
+        savedRow = dbConn.insertRecord(tableName, valores, columnas);
+        if (savedRow != null) {
             new Alert(Alert.AlertType.INFORMATION, "Operación exitosa").showAndWait();
             stage.close();
         } else {
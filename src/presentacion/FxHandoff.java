@@ -0,0 +1,40 @@
+package presentacion;
+
+import javafx.application.Platform;
+import logica.CancelToken;
+
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pasa bloques de un hilo de fondo al de JavaFX de uno en uno: antes de publicar un
+ * bloque se espera a que la interfaz haya consumido el anterior. Así la cola de eventos
+ * nunca guarda más de un bloque aunque el cursor lea más rápido de lo que se pinta, y
+ * el cursor del servidor se frena en lugar de llenar la memoria del cliente.
+ */
+final class FxHandoff {
+    // Cada cuánto se mira si la tarea se canceló mientras espera
+    private static final long CANCEL_CHECK_MS = 100;
+
+    private final Semaphore free = new Semaphore(1);
+
+    /** Publica {@code consumer} en el hilo de JavaFX cuando el anterior haya terminado. */
+    void publish(Runnable consumer, CancelToken token) throws SQLException {
+        try {
+            while (!free.tryAcquire(CANCEL_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                token.throwIfCancelled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Lectura interrumpida", "57014");
+        }
+        Platform.runLater(() -> {
+            try {
+                consumer.run();
+            } finally {
+                free.release();
+            }
+        });
+    }
+}
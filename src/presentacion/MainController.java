@@ -1,65 +1,423 @@
 package presentacion;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.binding.BooleanBinding;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.collections.ObservableList;
-import javafx.collections.FXCollections;
-import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 import javafx.stage.Modality;
+import javafx.stage.FileChooser;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.util.Duration;
 import modelo.TableData;
+import modelo.TableSchema;
 import modelo.ColumnInfo;
+import logica.BatchWriter;
+import logica.ChangeFeed;
+import logica.ConnectionPool;
 import logica.DatabaseConnection;
+import logica.DeltaRefresher;
+import logica.KeysetPager;
+import logica.SearchCache;
+import logica.SearchEngine;
+import logica.SortKey;
+import logica.TableChangeMonitor;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
 
 public class MainController {
-    @FXML private TableView<ObservableList<Object>> tableView;
+    @FXML private TableView<Integer> tableView;
     @FXML private Label lblStatus;
     @FXML private TextField txtBuscar;
+    @FXML private ComboBox<String> cbColumna;
+    @FXML private ComboBox<String> cbModo;
+    @FXML private ProgressIndicator progress;
+    @FXML private Button btnCancelar;
+    @FXML private CheckBox chkLote;
+    @FXML private Spinner<Integer> spnLote;
+    @FXML private Button btnAplicarLote;
+    @FXML private Button btnEliminar;
+    @FXML private Button btnImportar;
+    @FXML private Button btnExportar;
+    @FXML private CheckBox chkAuto;
+    @FXML private CheckBox chkVivo;
+    @FXML private ComboBox<String> cbActualizar;
+    @FXML private CheckBox chkCompacta;
+    @FXML private StackPane vistaDatos;
 
     private DatabaseConnection dbConn;
     private String tableName;
+    // Todas las consultas de la vista pasan por aquí; una nueva reemplaza a la que siga en curso
+    private final QueryRunner queryRunner = new QueryRunner();
+    // Tareas largas (lotes, importación, exportación, índices): una búsqueda nueva no debe
+    // cancelarlas, así que van por separado. Solo hay una a la vez: sus botones se
+    // desactivan mientras corre, porque enviar otra cancelaría la que está en curso
+    private final QueryRunner jobRunner = new QueryRunner();
+    // Borrado de una fila: no se puede cancelar (no lleva token), así que Cancelar no lo
+    // toca y su resultado siempre se aplica a la vista
+    private final QueryRunner writeRunner = new QueryRunner();
+    // Relectura de las filas visibles en modo auto-actualizar; no interrumpe a las otras
+    private final QueryRunner refreshRunner = new QueryRunner();
+    // Avisos del sondeo de cambios; llegan desde su hilo y se pasan al de la interfaz
+    private final TableChangeMonitor.Listener changeListener =
+            (table, delta) -> Platform.runLater(() -> refreshVisibleRows(delta));
+    // Cambios en vivo: los avisos se juntan un momento y se releen por lotes de claves
+    private final ChangeFeed.Listener feedListener =
+            (table, changes) -> Platform.runLater(() -> queueFeedChanges(changes));
+    private final QueryRunner feedRunner = new QueryRunner();
+    private final PauseTransition feedDelay = new PauseTransition(Duration.millis(FEED_COALESCE_MS));
+    // Claves avisadas pendientes de aplicar, sin repetir; gana la última operación
+    private final Map<List<String>, ChangeFeed.Operation> pendingFeed = new LinkedHashMap<>();
+    // Filas recién cambiadas por otros, resaltadas durante unos segundos (por número de fila).
+    // Los números de fila solo valen dentro de un modelo: se vacía al cambiar de modelo
+    private final Set<Integer> highlighted = new HashSet<>();
+    // Espera tras la última tecla antes de buscar
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(SEARCH_DELAY_MS));
+    // Resultados recientes de búsqueda, para no repetir consultas al escribir y borrar
+    private final SearchCache searchCache = new SearchCache(SEARCH_CACHE_SIZE);
+    // Columnas de la vista, creadas una vez por esquema; cada carga solo cambia las filas
+    private TableViewBuilder tableBuilder;
+    // Filas mostradas: números de fila dentro de los TableData cargados, sin copiar valores
+    private TableRowModel rows;
+    // Vista compacta: las mismas filas pintadas en un Canvas, para tablas muy anchas
+    private final CanvasGrid grid = new CanvasGrid();
+    // Paginador de la navegación normal; es null mientras se muestran resultados de búsqueda
+    private KeysetPager pager;
+    // Orden pedido en el servidor al pulsar una cabecera (null = orden de la clave primaria)
+    private SortKey sort;
+    // Mientras se reconstruyen las columnas, los cambios de orden no son del usuario
+    private boolean rebuildingColumns;
+    // Filtro de la búsqueda mostrada (null = tabla completa); lo usa la exportación
+    private SearchEngine.Predicate searchFilter;
+    // Cambios pendientes del modo lote; se aplican todos juntos con "Aplicar lote"
+    private final BatchWriter batchWriter = new BatchWriter();
+    // Actualización incremental elegida en cbActualizar; null = recarga completa
+    private DeltaRefresher deltaRefresher;
+
+    // Resultados de insertPosition cuando la fila nueva no se coloca en la vista
+    private static final int NOT_LOADED = -1;
+    private static final int UNKNOWN_POSITION = -2;
+    // Cuántas filas antes del final se pide la página siguiente
+    private static final int PREFETCH_ROWS = 50;
+    // Tope de filas que muestra una búsqueda; llegan por bloques, no de golpe
+    private static final int MAX_SEARCH_ROWS = 10_000;
+    private static final int SEARCH_DELAY_MS = 250;
+    private static final int SEARCH_CACHE_SIZE = 16;
+    // Por debajo de estas filas estimadas no merece la pena proponer un índice de búsqueda
+    private static final long INDEX_SUGGESTION_ROWS = 10_000;
+    // A partir de estas filas estimadas se avisa antes de ordenar por una columna sin índice
+    private static final long SORT_WARNING_ROWS = 100_000;
+    private static final int FEED_COALESCE_MS = 200;
+    // Claves por consulta al releer filas avisadas
+    private static final int FEED_FETCH_BATCH = 500;
+    private static final int HIGHLIGHT_MS = 3_000;
+    private static final String HIGHLIGHT_STYLE = "-fx-background-color: #fff3b0;";
+    private static final String FULL_REFRESH = "Recarga completa";
+    private static final String XMIN_REFRESH = "Incremental (xmin)";
+    private static final String COLUMN_REFRESH = "Incremental por ";
+    // Opción del selector de columnas para buscar en todas las de texto a la vez
+    private static final String ALL_TEXT_COLUMNS = "(todas las de texto)";
+    // Índices que el usuario ya rechazó crear en esta ventana
+    private final Set<String> declinedIndexes = new HashSet<>();
+
+    @FXML
+    public void initialize() {
+        tableBuilder = new TableViewBuilder(tableView);
+        rows = tableBuilder.getRows();
+        grid.setVisible(false);
+        grid.setHighlighted(highlighted);
+        grid.setOnNearEnd(this::requestNextPage);
+        vistaDatos.getChildren().add(grid);
+        tableBuilder.setGrid(grid);
+        chkCompacta.selectedProperty().addListener((obs, old, on) -> setCompactView(on));
+        BooleanBinding busy = queryRunner.runningProperty().or(jobRunner.runningProperty());
+        progress.visibleProperty().bind(busy.or(writeRunner.runningProperty()));
+        progress.managedProperty().bind(progress.visibleProperty());
+        btnCancelar.disableProperty().bind(busy.not());
+        btnImportar.disableProperty().bind(jobRunner.runningProperty());
+        btnExportar.disableProperty().bind(jobRunner.runningProperty());
+        btnEliminar.disableProperty().bind(writeRunner.runningProperty());
+
+        // Búsqueda mientras se escribe: cada tecla reinicia la espera
+        searchDelay.setOnFinished(e -> search(false));
+        txtBuscar.textProperty().addListener((obs, old, val) -> searchDelay.playFromStart());
+        cbModo.valueProperty().addListener((obs, old, val) -> searchDelay.playFromStart());
+        cbColumna.valueProperty().addListener((obs, old, val) -> searchDelay.playFromStart());
+
+        spnLote.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+                1, 10_000, BatchWriter.DEFAULT_BATCH_SIZE, 100));
+        spnLote.valueProperty().addListener((obs, old, val) -> batchWriter.setBatchSize(val));
+        btnAplicarLote.disableProperty().bind(jobRunner.runningProperty());
+        updateBatchButton();
+
+        chkAuto.selectedProperty().addListener((obs, old, on) -> setAutoRefresh(on));
+        chkVivo.selectedProperty().addListener((obs, old, on) -> setLiveFeed(on));
+        feedDelay.setOnFinished(e -> applyFeedChanges());
+
+        // Al pulsar una cabecera ordena el servidor; las filas cargadas son solo una parte.
+        // Los resultados de búsqueda y de PK se ordenan en memoria, que ahí sí están todos
+        tableView.setSortPolicy(tv -> {
+            if (rebuildingColumns) return true;
+            if (pager == null) return TableView.DEFAULT_SORT_POLICY.call(tv);
+            SortKey requested = requestedSort();
+            if (!Objects.equals(requested, sort)) {
+                // Fuera del propio sort(): applySort puede abrir un diálogo
+                Platform.runLater(() -> applySort(requested));
+            }
+            return true;
+        });
+
+        // La tabla solo crea filas para lo visible; cuando se acerca al final pedimos más
+        tableView.setRowFactory(tv -> new TableRow<>() {
+            @Override
+            public void updateIndex(int i) {
+                super.updateIndex(i);
+                if (i >= 0 && i >= tableView.getItems().size() - PREFETCH_ROWS) {
+                    requestNextPage();
+                }
+            }
+
+            @Override
+            protected void updateItem(Integer item, boolean empty) {
+                super.updateItem(item, empty);
+                setStyle(!empty && item != null && highlighted.contains(item) ? HIGHLIGHT_STYLE : "");
+            }
+        });
+    }
 
     public void init(DatabaseConnection conn, String tableName) {
         this.dbConn = conn;
         this.tableName = tableName;
+
+        // Estadísticas del pool y de la caché de statements al pasar el ratón por el estado
+        Tooltip stats = new Tooltip();
+        stats.setOnShowing(e -> stats.setText(dbConn.getPool() == null ? "Sin conexión" : poolStats()));
+        lblStatus.setTooltip(stats);
+
+        // Por defecto se busca por la clave primaria, que siempre tiene índice
+        TableSchema schema = dbConn.loadTableStructure(tableName);
+        for (ColumnInfo col : schema.getColumns()) {
+            cbColumna.getItems().add(col.getName());
+        }
+        if (!SearchEngine.textColumns(schema).isEmpty()) {
+            cbColumna.getItems().add(ALL_TEXT_COLUMNS);
+        }
+        cbModo.getItems().addAll("Por tipo", "Texto completo", "Similitud");
+        cbModo.getSelectionModel().selectFirst();
+        ColumnInfo pk = schema.getPrimaryKeyColumn();
+        if (pk != null) {
+            cbColumna.setValue(pk.getName());
+        } else if (!cbColumna.getItems().isEmpty()) {
+            cbColumna.setValue(cbColumna.getItems().get(0));
+        }
+        // Modos de "Actualizar": las columnas de fecha pueden servir de updated_at
+        cbActualizar.getItems().add(FULL_REFRESH);
+        if (schema.hasPrimaryKey()) {
+            cbActualizar.getItems().add(XMIN_REFRESH);
+            for (ColumnInfo col : schema.getColumns()) {
+                if (col.isDateLike()) cbActualizar.getItems().add(COLUMN_REFRESH + col.getName());
+            }
+        }
+        cbActualizar.setValue(FULL_REFRESH);
+        cbActualizar.valueProperty().addListener((obs, old, mode) -> setRefreshMode(mode));
+
+        txtBuscar.setTooltip(new Tooltip("Números y fechas: 10, >10, 10..20, 1, 2, 3\n"
+                + "Texto: prefijo (* como comodín), =valor exacto, =a, b para una lista"));
         loadData();
     }
 
     @FXML
     public void loadData() {
-        TableData tableData = dbConn.loadTableData(tableName);
-        tableView.getColumns().clear();
-        ObservableList<ObservableList<Object>> data = FXCollections.observableArrayList();
-
-        ArrayList<ColumnInfo> cols = tableData.getColumns();
-        for (int i = 0; i < cols.size(); i++) {
-            final int colIndex = i;
-            TableColumn<ObservableList<Object>, Object> col = new TableColumn<>(cols.get(i).getName());
-            col.setCellValueFactory(cellData -> {
-                ObservableList<Object> row = cellData.getValue();
-                Object val = (colIndex < row.size()) ? row.get(colIndex) : null;
-                return new SimpleObjectProperty<>(val);
-            });
-            tableView.getColumns().add(col);
+        lblStatus.setText("Cargando tabla " + tableName + "...");
+        KeysetPager newPager = new KeysetPager(dbConn, tableName, sort);
+        DeltaRefresher refresher = deltaRefresher;
+        pager = null;
+        searchFilter = null;
+        queryRunner.submit(token -> {
+            // La marca se toma antes de leer: lo cambiado durante la carga saldrá en la próxima
+            if (refresher != null) refresher.markNow();
+            return newPager.fetchNextPage(token);
+        }, page -> {
+            pager = newPager;
+            pager.advance(page);
+            showTableData(page, pageStatus(page.getRowCount()));
+        }, this::showError);
+    }
+
+    // Orden que muestran ahora las cabeceras; el de la PK ascendente equivale a no ordenar
+    private SortKey requestedSort() {
+        if (tableView.getSortOrder().isEmpty()) return null;
+        TableColumn<Integer, ?> column = tableView.getSortOrder().get(0);
+        SortKey requested = new SortKey(column.getText(),
+                column.getSortType() == TableColumn.SortType.ASCENDING);
+        TableSchema schema = dbConn.loadTableStructure(tableName);
+        int[] pk = schema.getPrimaryKeyIndices();
+        if (requested.isAscending() && pk.length == 1
+                && schema.getColumnName(pk[0]).equals(requested.getColumn())) {
+            return null;
+        }
+        return requested;
+    }
+
+    /**
+     * Recarga la tabla con el nuevo orden. Si la columna no tiene índice y la tabla es
+     * grande, el servidor tendría que ordenarla entera antes de devolver nada: se pregunta antes.
+     */
+    private void applySort(SortKey requested) {
+        if (Objects.equals(requested, sort)) return;
+        TableSchema schema = dbConn.loadTableStructure(tableName);
+        long rows = schema.getEstimatedRows();
+        if (requested != null && rows >= SORT_WARNING_ROWS && !requested.hasIndex(schema)) {
+            ButtonType ordenar = new ButtonType("Ordenar", ButtonBar.ButtonData.OK_DONE);
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                    "La columna " + requested.getColumn() + " no tiene índice. Para ordenar, el servidor"
+                            + " tendrá que leer y ordenar unas " + rows + " filas antes de mostrar la primera página.",
+                    ordenar, ButtonType.CANCEL);
+            confirm.setHeaderText("Ordenar sin índice");
+            if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ordenar) {
+                restoreSortOrder();
+                return;
+            }
+        }
+        sort = requested;
+        loadData();
+    }
+
+    // Deja las cabeceras mostrando el orden real de los datos cargados
+    private void restoreSortOrder() {
+        rebuildingColumns = true;
+        try {
+            tableView.getSortOrder().clear();
+            if (sort == null || pager == null) return;
+            for (TableColumn<Integer, ?> column : tableView.getColumns()) {
+                if (column.getText().equals(sort.getColumn())) {
+                    column.setSortType(sort.isAscending()
+                            ? TableColumn.SortType.ASCENDING : TableColumn.SortType.DESCENDING);
+                    tableView.getSortOrder().add(column);
+                    break;
+                }
+            }
+        } finally {
+            rebuildingColumns = false;
         }
+    }
+
+    /** Carga la página siguiente y la añade al final, sin reconstruir la tabla. */
+    private void requestNextPage() {
+        KeysetPager current = pager;
+        if (current == null || current.isExhausted() || queryRunner.isRunning()) return;
+
+        queryRunner.submit(current::fetchNextPage, page -> {
+            if (pager != current) return;
+            current.advance(page);
+            appendRows(page);
+            lblStatus.setText(pageStatus(tableView.getItems().size()));
+        }, e -> {
+            // Sin diálogo: se vuelve a intentar al seguir desplazando
+            lblStatus.setText("Error al cargar más registros: " + e.getMessage());
+        });
+    }
+
+    private void appendRows(TableData chunk) {
+        rows.appendBlock(chunk);
+    }
+
+    private String pageStatus(int loaded) {
+        String more = (pager != null && !pager.isExhausted()) ? " (desplace para cargar más)" : "";
+        String order = (pager != null && pager.getSort() != null) ? " - orden: " + pager.getSort() : "";
+        return "Conectado - tabla: " + tableName + order + " - registros cargados: " + loaded + more;
+    }
+
+    private String poolStats() {
+        ConnectionPool pool = dbConn.getPool();
+        return String.format("Conexiones: %d activas, %d libres (máx. %d)%n"
+                        + "Espera media de préstamo: %.2f ms%n"
+                        + "Caché de statements: %d aciertos, %d fallos (%.1f%%)",
+                pool.getActiveConnections(), pool.getIdleConnections(), pool.getMaxSize(),
+                pool.getAverageBorrowWaitMs(),
+                pool.getStatementCacheHits(), pool.getStatementCacheMisses(), pool.getStatementCacheHitRatio());
+    }
+
+    @FXML
+    private void handleCancelar() {
+        queryRunner.cancel();
+        jobRunner.cancel();
+        lblStatus.setText("Consulta cancelada");
+    }
 
-        for (ArrayList<Object> row : tableData.getRows()) {
-            data.add(FXCollections.observableArrayList(row));
+    private void showTableData(TableData tableData, String status) {
+        rebuildingColumns = true;
+        try {
+            // Las filas se leen del propio TableData; no se copia ningún valor
+            rows = tableBuilder.show(tableData);
+            highlighted.clear();
+        } finally {
+            rebuildingColumns = false;
         }
+        restoreSortOrder();
+        lblStatus.setText(status);
+    }
 
-        tableView.setItems(data);
-        lblStatus.setText("Conectado - tabla: " + tableName + " - registros: " + data.size());
+    private void showError(Throwable e) {
+        lblStatus.setText("Error: " + e.getMessage());
+        new Alert(Alert.AlertType.ERROR, "Error en la consulta: " + e.getMessage()).showAndWait();
     }
 
     @FXML
     private void handleRefresh() {
-        loadData();
+        searchCache.clear();
+        DeltaRefresher refresher = deltaRefresher;
+        if (refresher == null || !refresher.hasMark()) {
+            loadData();
+            return;
+        }
+
+        // Solo viaja lo cambiado desde la marca y las claves cargadas para ver cuáles se borraron
+        int[] pk = dbConn.loadTableStructure(tableName).getPrimaryKeyIndices();
+        List<Object[]> loadedKeys = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            loadedKeys.add(rowKey(rows.getId(i), pk));
+        }
+        KeysetPager loadedBy = pager;
+        lblStatus.setText("Buscando cambios...");
+        queryRunner.submit(token -> refresher.fetchChanges(loadedKeys, loadedBy, token), delta -> {
+            int deleted = removeKeys(delta.getDeletedKeys(), pk);
+            applyFetchedRows(delta.getChanged().getRows(), pk, deleted, "Actualización incremental");
+        }, this::showError);
+    }
+
+    private void setRefreshMode(String mode) {
+        if (mode == null || FULL_REFRESH.equals(mode)) {
+            deltaRefresher = null;
+        } else {
+            String column = XMIN_REFRESH.equals(mode) ? null : mode.substring(COLUMN_REFRESH.length());
+            deltaRefresher = new DeltaRefresher(dbConn, tableName, column);
+            // Sin marca todavía: el próximo "Actualizar" recarga entero y la fija
+            lblStatus.setText("Pulse Actualizar para tomar la referencia de la actualización incremental");
+        }
     }
 
     @FXML
@@ -71,10 +429,15 @@ public class MainController {
             Stage s = new Stage();
             s.setTitle("Nuevo registro - " + tableName);
             fc.init(s, tableName, dbConn.loadTableStructure(tableName), dbConn, false, null);
+            if (chkLote.isSelected()) fc.setBatchWriter(batchWriter);
             s.setScene(new Scene(root));
             s.initModality(Modality.APPLICATION_MODAL);
             s.showAndWait();
-            loadData();
+            if (chkLote.isSelected()) {
+                afterQueued();
+            } else if (fc.getSavedRow() != null) {
+                rowInserted(fc.getSavedRow());
+            }
         } catch (Exception e) {
             e.printStackTrace();
             new Alert(Alert.AlertType.ERROR, "Error al abrir formulario: " + e.getMessage()).showAndWait();
@@ -83,14 +446,18 @@ public class MainController {
 
     @FXML
     private void handleEditar() {
-        int idx = tableView.getSelectionModel().getSelectedIndex();
+        int idx = selectedIndex();
         if (idx < 0) {
             new Alert(Alert.AlertType.WARNING, "Seleccione una fila").showAndWait();
             return;
         }
 
         try {
-            ArrayList<Object> rowValues = new ArrayList<>(tableView.getItems().get(idx));
+            // El número de fila solo vale en este modelo; mientras el formulario está
+            // abierto la vista puede haberse recargado con otro
+            TableRowModel model = rows;
+            int selected = model.getId(idx);
+            ArrayList<Object> rowValues = model.getRow(selected);
 
             FXMLLoader loader = new FXMLLoader(getClass().getResource("FormularioView.fxml"));
             Parent root = loader.load();
@@ -98,10 +465,15 @@ public class MainController {
             Stage s = new Stage();
             s.setTitle("Editar registro - " + tableName);
             fc.init(s, tableName, dbConn.loadTableStructure(tableName), dbConn, true, rowValues);
+            if (chkLote.isSelected()) fc.setBatchWriter(batchWriter);
             s.setScene(new Scene(root));
             s.initModality(Modality.APPLICATION_MODAL);
             s.showAndWait();
-            loadData();
+            if (chkLote.isSelected()) {
+                afterQueued();
+            } else if (fc.getSavedRow() != null) {
+                rowUpdated(model, selected, fc.getSavedRow());
+            }
         } catch (Exception e) {
             e.printStackTrace();
             new Alert(Alert.AlertType.ERROR, "Error al abrir formulario: " + e.getMessage()).showAndWait();
@@ -110,16 +482,18 @@ public class MainController {
 
     @FXML
     private void handleEliminar() {
-        int idx = tableView.getSelectionModel().getSelectedIndex();
+        int idx = selectedIndex();
         if (idx < 0) {
             new Alert(Alert.AlertType.WARNING, "Seleccione una fila").showAndWait();
             return;
         }
 
         try {
-            ArrayList<Object> rowValues = new ArrayList<>(tableView.getItems().get(idx));
+            TableRowModel model = rows;
+            int selected = model.getId(idx);
+            ArrayList<Object> rowValues = model.getRow(selected);
 
-            TableData td = dbConn.loadTableStructure(tableName);
+            TableSchema td = dbConn.loadTableStructure(tableName);
             String pkCol = null;
             Object pkVal = null;
             for (int i = 0; i < td.getColumnCount(); i++) {
@@ -140,13 +514,22 @@ public class MainController {
                 ButtonType.OK, ButtonType.CANCEL);
 
             if (confirm.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK) {
-                boolean ok = dbConn.deleteRecord(tableName, pkCol, pkVal);
-                if (ok) {
-                    new Alert(Alert.AlertType.INFORMATION, "Registro eliminado correctamente").showAndWait();
-                    loadData();
-                } else {
-                    new Alert(Alert.AlertType.ERROR, "Error al eliminar el registro").showAndWait();
+                // En modo lote se confirma igual, aunque el borrado se aplique al aplicar el lote
+                if (chkLote.isSelected()) {
+                    batchWriter.queueDelete(tableName, pkCol, pkVal);
+                    afterQueued();
+                    return;
                 }
+                final String col = pkCol;
+                final Object val = pkVal;
+                writeRunner.submit(token -> dbConn.deleteRecord(tableName, col, val), ok -> {
+                    if (ok) {
+                        rowDeleted(model, selected);
+                        new Alert(Alert.AlertType.INFORMATION, "Registro eliminado correctamente").showAndWait();
+                    } else {
+                        new Alert(Alert.AlertType.ERROR, "Error al eliminar el registro").showAndWait();
+                    }
+                }, this::showError);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -154,45 +537,776 @@ public class MainController {
         }
     }
 
+    // En modo lote no hay nada nuevo en la base de datos hasta aplicar el lote
+    private void afterQueued() {
+        updateBatchButton();
+        lblStatus.setText("Modo lote - " + batchWriter.size() + " cambios pendientes");
+    }
+
+    // Tras una escritura se corrige solo la fila afectada con lo que devolvió el servidor;
+    // la tabla completa solo se vuelve a leer con "Actualizar". Si entretanto la vista pasó
+    // a otro modelo, el número de fila ya no significa nada y no se toca
+    private void rowUpdated(TableRowModel model, int oldRow, List<Object> newRow) {
+        searchCache.clear();
+        if (model != rows) {
+            lblStatus.setText("Registro actualizado; pulse Actualizar para verlo");
+            return;
+        }
+        int i = rows.indexOfId(oldRow);
+        if (i >= 0) {
+            rows.setRow(i, newRow);
+            selectRow(i);
+        }
+        lblStatus.setText("Registro actualizado - " + rows.size() + " registros cargados");
+    }
+
+    private void rowDeleted(TableRowModel model, int row) {
+        searchCache.clear();
+        if (model != rows) {
+            lblStatus.setText("Registro eliminado; pulse Actualizar para quitarlo de la vista");
+            return;
+        }
+        int i = rows.indexOfId(row);
+        if (i >= 0) rows.remove(i);
+        lblStatus.setText("Registro eliminado - " + rows.size() + " registros cargados");
+    }
+
+    /**
+     * Coloca la fila nueva donde le toca según el orden de la vista. Si cae detrás de la
+     * última fila cargada y aún quedan páginas, no se añade: llegará al desplazarse, y
+     * añadirla ahora la duplicaría.
+     */
+    private void rowInserted(List<Object> row) {
+        searchCache.clear();
+        int position = insertPosition(row);
+        if (position == NOT_LOADED) {
+            lblStatus.setText("Registro insertado; aparecerá al desplazarse hasta su posición");
+            return;
+        }
+        if (position == UNKNOWN_POSITION) {
+            lblStatus.setText("Registro insertado; pulse Actualizar para verlo en su posición");
+            return;
+        }
+        rows.addRow(position, row);
+        selectRow(position);
+        tableView.scrollTo(position);
+        lblStatus.setText("Registro insertado - " + rows.size() + " registros cargados");
+    }
+
+    // Posición de una fila nueva en el orden de la vista; NOT_LOADED si aún no está cargada
+    // esa zona y UNKNOWN_POSITION si el orden del servidor no se puede reproducir aquí.
+    // Las filas del paginador ya vienen en ese orden: basta una búsqueda binaria
+    private int insertPosition(List<Object> row) {
+        Comparator<List<Object>> order = null;
+        if (pager != null) {
+            order = loadedOrder();
+            if (order == null) return UNKNOWN_POSITION;
+        }
+        int position = rows.size();
+        if (order != null) {
+            int low = 0;
+            int high = rows.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (order.compare(rows.getRow(rows.getId(mid)), row) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            position = low;
+        }
+        if (pager != null && position == rows.size() && !pager.isExhausted()) {
+            return NOT_LOADED;
+        }
+        return position;
+    }
+
+    /**
+     * Orden en que el paginador trae las filas: columna de orden (nulos al final en
+     * ascendente) y después la PK. Null si la tabla no tiene PK y el orden no es total,
+     * o si alguna de esas columnas es de texto: el servidor las compara con su collation,
+     * que String.compareTo no reproduce.
+     */
+    private Comparator<List<Object>> loadedOrder() {
+        TableSchema schema = dbConn.loadTableStructure(tableName);
+        int[] pk = schema.getPrimaryKeyIndices();
+        if (pk.length == 0) return null;
+        for (int k : pk) {
+            if (!hasCollationFreeOrder(schema.getColumn(k))) return null;
+        }
+        SortKey current = pager.getSort();
+        Comparator<List<Object>> order = (a, b) -> 0;
+        if (current != null) {
+            int c = schema.indexOf(current.getColumn());
+            if (c < 0 || !hasCollationFreeOrder(schema.getColumn(c))) return null;
+            order = Comparator.comparing(r -> r.get(c), Comparator.nullsLast(MainController::compareValues));
+        }
+        for (int k : pk) {
+            order = order.thenComparing(r -> r.get(k), Comparator.nullsLast(MainController::compareValues));
+        }
+        return current != null && !current.isAscending() ? order.reversed() : order;
+    }
+
+    // Tipos que el servidor ordena igual que Java, sin depender de la collation
+    private static boolean hasCollationFreeOrder(ColumnInfo column) {
+        switch (column.getCodec().getCategory()) {
+            case NUMBER:
+            case BOOLEAN:
+            case DATE:
+            case TIMESTAMP:
+            case TIME:
+            case UUID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        // PostgreSQL compara los uuid byte a byte sin signo; UUID.compareTo usa long con signo
+        if (a instanceof UUID && b instanceof UUID) {
+            UUID x = (UUID) a;
+            UUID y = (UUID) b;
+            int high = Long.compareUnsigned(x.getMostSignificantBits(), y.getMostSignificantBits());
+            return high != 0 ? high : Long.compareUnsigned(x.getLeastSignificantBits(), y.getLeastSignificantBits());
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private void setAutoRefresh(boolean on) {
+        TableChangeMonitor monitor = dbConn.getChangeMonitor();
+        if (on) {
+            monitor.subscribe(tableName, changeListener);
+            stopOnClose();
+            lblStatus.setText("Auto-actualizar activado: se comprueban cambios cada "
+                    + TableChangeMonitor.DEFAULT_INTERVAL_MS / 1000 + " s");
+        } else {
+            monitor.unsubscribe(tableName, changeListener);
+            refreshRunner.cancel();
+        }
+    }
+
+    // Una ventana cerrada no debe seguir sondeando ni escuchando
+    private void stopOnClose() {
+        tableView.getScene().getWindow().setOnHidden(e -> {
+            chkAuto.setSelected(false);
+            chkVivo.setSelected(false);
+        });
+    }
+
+    /**
+     * Activa los avisos de cambios de la tabla. La primera vez hay que instalar en la
+     * tabla un trigger, y eso se pregunta antes porque modifica la base de datos.
+     */
+    private void setLiveFeed(boolean on) {
+        ChangeFeed feed = dbConn.getChangeFeed();
+        if (!on) {
+            feed.unsubscribe(tableName, feedListener);
+            feedDelay.stop();
+            pendingFeed.clear();
+            return;
+        }
+        if (!dbConn.loadTableStructure(tableName).hasPrimaryKey()) {
+            new Alert(Alert.AlertType.WARNING, "Los cambios en vivo necesitan una clave primaria").showAndWait();
+            chkVivo.setSelected(false);
+            return;
+        }
+        // Por feedRunner, que solo usan los cambios en vivo: no interrumpe importaciones ni lotes
+        feedRunner.submit(token -> dbConn.hasChangeTrigger(tableName), installed -> {
+            if (installed) {
+                startLiveFeed();
+                return;
+            }
+            ButtonType instalar = new ButtonType("Instalar", ButtonBar.ButtonData.OK_DONE);
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                    "Para recibir los cambios en vivo hay que instalar en la tabla " + tableName
+                            + " el trigger visor_cambios, que avisa de cada fila insertada,"
+                            + " modificada o borrada. ¿Instalarlo?",
+                    instalar, ButtonType.CANCEL);
+            confirm.setHeaderText("Cambios en vivo");
+            if (confirm.showAndWait().orElse(ButtonType.CANCEL) != instalar) {
+                chkVivo.setSelected(false);
+                return;
+            }
+            feedRunner.submit(token -> {
+                dbConn.installChangeTrigger(tableName);
+                return true;
+            }, ok -> startLiveFeed(), e -> {
+                chkVivo.setSelected(false);
+                showError(e);
+            });
+        }, e -> {
+            chkVivo.setSelected(false);
+            showError(e);
+        });
+    }
+
+    private void startLiveFeed() {
+        // Se pudo desmarcar mientras se comprobaba el trigger
+        if (!chkVivo.isSelected()) return;
+        dbConn.getChangeFeed().subscribe(tableName, feedListener);
+        stopOnClose();
+        lblStatus.setText("Cambios en vivo activados");
+    }
+
+    private void queueFeedChanges(List<ChangeFeed.RowChange> changes) {
+        if (!chkVivo.isSelected()) return;
+        for (ChangeFeed.RowChange change : changes) {
+            pendingFeed.remove(change.getKey());
+            pendingFeed.put(change.getKey(), change.getOperation());
+        }
+        // Ventana fija, no reiniciada con cada aviso: con un flujo continuo también se aplica
+        if (feedDelay.getStatus() != javafx.animation.Animation.Status.RUNNING) {
+            feedDelay.play();
+        }
+    }
+
+    /**
+     * Aplica los avisos pendientes: los borrados se quitan sin consultar y el resto se
+     * relee por PK en lotes de FEED_FETCH_BATCH claves.
+     */
+    private void applyFeedChanges() {
+        if (pendingFeed.isEmpty() || !chkVivo.isSelected()) return;
+        if (feedRunner.isRunning()) {
+            // Una relectura sigue en curso; estos avisos esperan a la siguiente ventana
+            feedDelay.playFromStart();
+            return;
+        }
+        int[] pk = dbConn.loadTableStructure(tableName).getPrimaryKeyIndices();
+        List<List<String>> toDelete = new ArrayList<>();
+        List<Object[]> toFetch = new ArrayList<>();
+        for (Map.Entry<List<String>, ChangeFeed.Operation> entry : pendingFeed.entrySet()) {
+            if (entry.getValue() == ChangeFeed.Operation.DELETE) {
+                toDelete.add(entry.getKey());
+            } else {
+                toFetch.add(entry.getKey().toArray());
+            }
+        }
+        int removed = removeKeys(toDelete, pk);
+        pendingFeed.clear();
+        searchCache.clear();
+        if (toFetch.isEmpty()) {
+            lblStatus.setText(changeStatus("Cambios en vivo", 0, 0, removed));
+            return;
+        }
+
+        final int deleted = removed;
+        feedRunner.submit(token -> {
+            List<ArrayList<Object>> fetched = new ArrayList<>();
+            for (int from = 0; from < toFetch.size(); from += FEED_FETCH_BATCH) {
+                List<Object[]> batch = toFetch.subList(from, Math.min(toFetch.size(), from + FEED_FETCH_BATCH));
+                fetched.addAll(dbConn.loadRowsByKey(tableName, batch, token).getRows());
+            }
+            return fetched;
+        }, fetched -> applyFetchedRows(fetched, pk, deleted, "Cambios en vivo"),
+                e -> lblStatus.setText("Error al aplicar cambios en vivo: " + e.getMessage()));
+    }
+
+    // Filas releídas: se sustituyen si están cargadas y, si no, se colocan como una inserción.
+    // Las posiciones se buscan en un mapa hecho una vez; sustituir no las mueve, así que
+    // las inserciones, que sí las mueven, se hacen al final
+    private void applyFetchedRows(List<ArrayList<Object>> fetched, int[] pk, int deleted, String label) {
+        List<Integer> touched = new ArrayList<>();
+        List<ArrayList<Object>> inserted = new ArrayList<>();
+        Map<List<Object>, Integer> positions = positionsByKey(pk);
+        int changed = 0;
+        int added = 0;
+        for (ArrayList<Object> row : fetched) {
+            Integer i = positions.get(Arrays.asList(rowKey(row, pk)));
+            if (i == null) {
+                inserted.add(row);
+            } else if (!rows.getRow(rows.getId(i)).equals(row)) {
+                touched.add(rows.setRow(i, row));
+                changed++;
+            }
+        }
+        for (ArrayList<Object> row : inserted) {
+            // En resultados de búsqueda no se sabe si la fila cumple el filtro: no se añade
+            int position = pager == null ? -1 : insertPosition(row);
+            if (position < 0) continue;
+            touched.add(rows.addRow(position, row));
+            added++;
+        }
+        highlight(touched);
+        if (changed + added + deleted > 0) searchCache.clear();
+        lblStatus.setText(changeStatus(label, changed, added, deleted));
+    }
+
+    private String changeStatus(String label, int changed, int added, int deleted) {
+        return label + " " + LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")) + ": "
+                + added + " nuevas, " + changed + " modificadas, " + deleted + " eliminadas";
+    }
+
+    private void highlight(List<Integer> ids) {
+        if (ids.isEmpty()) return;
+        highlighted.addAll(ids);
+        tableView.refresh();
+        grid.refresh();
+        TableRowModel model = rows;
+        PauseTransition fade = new PauseTransition(Duration.millis(HIGHLIGHT_MS));
+        fade.setOnFinished(e -> {
+            // Con otro modelo el conjunto ya se vació y esos números son de otras filas
+            if (model != rows) return;
+            ids.forEach(highlighted::remove);
+            tableView.refresh();
+            grid.refresh();
+        });
+        fade.play();
+    }
+
+    // Posición de cada fila cargada por los valores de su clave, para no recorrer la
+    // vista una vez por cada fila cambiada
+    private Map<List<Object>, Integer> positionsByKey(int[] pk) {
+        Map<List<Object>, Integer> positions = new HashMap<>(rows.size() * 2);
+        for (int i = 0; i < rows.size(); i++) {
+            positions.put(Arrays.asList(rowKey(rows.getId(i), pk)), i);
+        }
+        return positions;
+    }
+
+    // Quita las filas de las claves dadas; la clave llega como texto (avisos, claves
+    // borradas) y se convierte con el codec de cada columna. Devuelve cuántas se quitaron
+    private int removeKeys(Collection<List<String>> keys, int[] pk) {
+        if (keys.isEmpty()) return 0;
+        Map<List<Object>, Integer> positions = positionsByKey(pk);
+        BitSet found = new BitSet(rows.size());
+        for (List<String> key : keys) {
+            Object[] typed = typedKey(key, pk);
+            Integer i = typed == null ? null : positions.get(Arrays.asList(typed));
+            if (i != null) found.set(i);
+        }
+        rows.removeAt(found.stream().toArray());
+        return found.cardinality();
+    }
+
+    // Null si algún valor no es válido para su columna (ninguna fila cargada coincidiría)
+    private Object[] typedKey(List<String> key, int[] pk) {
+        TableSchema schema = dbConn.loadTableStructure(tableName);
+        Object[] typed = new Object[pk.length];
+        try {
+            for (int k = 0; k < pk.length; k++) {
+                typed[k] = schema.getColumn(pk[k]).getCodec().parse(key.get(k));
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return typed;
+    }
+
+    /**
+     * Los contadores de la tabla se han movido: se releen por PK solo las filas que se
+     * ven en pantalla. Las que ya no existen se quitan; las inserciones no se traen,
+     * se avisa de ellas en el estado.
+     */
+    private void refreshVisibleRows(TableChangeMonitor.Delta delta) {
+        if (!chkAuto.isSelected()) return;
+        String newRows = delta.getInserted() > 0 ? "; hay registros nuevos, pulse Actualizar para verlos" : "";
+        int[] pk = dbConn.loadTableStructure(tableName).getPrimaryKeyIndices();
+        List<Integer> visible = visibleRows();
+        if (pk.length == 0 || visible.isEmpty()) {
+            lblStatus.setText("La tabla ha cambiado (" + delta + ")" + (pk.length == 0 ? "; pulse Actualizar" : newRows));
+            return;
+        }
+
+        List<Object[]> keys = new ArrayList<>();
+        for (int id : visible) {
+            keys.add(rowKey(id, pk));
+        }
+        TableRowModel model = rows;
+        refreshRunner.submit(token -> dbConn.loadRowsByKey(tableName, keys, token),
+                fresh -> {
+                    // Recargada mientras tanto: las filas releídas eran de otro modelo
+                    if (model == rows) mergeRows(visible, fresh, pk, newRows);
+                },
+                e -> lblStatus.setText("Error al auto-actualizar: " + e.getMessage()));
+    }
+
+    private void mergeRows(List<Integer> visible, TableData fresh, int[] pk, String newRows) {
+        Map<List<Object>, ArrayList<Object>> byKey = new HashMap<>();
+        for (ArrayList<Object> row : fresh.getRows()) {
+            byKey.put(Arrays.asList(rowKey(row, pk)), row);
+        }
+        Integer selected = tableView.getSelectionModel().getSelectedItem();
+        int changed = 0;
+        int removed = 0;
+        for (int id : visible) {
+            int i = rows.indexOfId(id);
+            if (i < 0) continue;
+            ArrayList<Object> current = byKey.get(Arrays.asList(rowKey(id, pk)));
+            if (current == null) {
+                rows.remove(i);
+                removed++;
+            } else if (!rows.getRow(id).equals(current)) {
+                rows.setRow(i, current);
+                if (selected != null && selected == id) tableView.getSelectionModel().select(i);
+                changed++;
+            }
+        }
+        if (changed > 0 || removed > 0) searchCache.clear();
+        lblStatus.setText("Auto-actualizado a las " + LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"))
+                + ": " + changed + " filas cambiadas, " + removed + " eliminadas" + newRows);
+    }
+
+    private static Object[] rowKey(List<Object> row, int[] pk) {
+        Object[] key = new Object[pk.length];
+        for (int i = 0; i < pk.length; i++) {
+            key[i] = row.get(pk[i]);
+        }
+        return key;
+    }
+
+    private Object[] rowKey(int id, int[] pk) {
+        Object[] key = new Object[pk.length];
+        for (int i = 0; i < pk.length; i++) {
+            key[i] = rows.getValue(id, pk[i]);
+        }
+        return key;
+    }
+
+    // Filas que hay ahora en pantalla; sin la piel de la tabla aún creada, las primeras
+    private List<Integer> visibleRows() {
+        int first = 0;
+        int last = Math.min(rows.size(), PREFETCH_ROWS) - 1;
+        if (chkCompacta.isSelected()) {
+            first = grid.getFirstVisibleRow();
+            last = grid.getLastVisibleRow();
+        } else if (tableView.lookup(".virtual-flow") instanceof VirtualFlow<?> flow
+                && flow.getFirstVisibleCell() != null && flow.getLastVisibleCell() != null) {
+            first = flow.getFirstVisibleCell().getIndex();
+            last = flow.getLastVisibleCell().getIndex();
+        }
+        first = Math.max(0, first);
+        last = Math.min(rows.size() - 1, last);
+        return first > last ? new ArrayList<>() : new ArrayList<>(rows.subList(first, last + 1));
+    }
+
+    /**
+     * Cambia entre la tabla y la rejilla compacta sobre Canvas. Las dos muestran el mismo
+     * modelo de filas; solo se traslada la selección.
+     */
+    private void setCompactView(boolean on) {
+        int selected = selectedIndex(!on);
+        grid.setVisible(on);
+        tableView.setVisible(!on);
+        selectRow(selected);
+        if (on) {
+            grid.requestFocus();
+        } else {
+            tableView.requestFocus();
+        }
+    }
+
+    private int selectedIndex() {
+        return selectedIndex(chkCompacta.isSelected());
+    }
+
+    private int selectedIndex(boolean compact) {
+        return compact ? grid.getSelectedIndex() : tableView.getSelectionModel().getSelectedIndex();
+    }
+
+    // Selecciona la fila en las dos vistas, para que coincidan al cambiar de una a otra
+    private void selectRow(int index) {
+        if (index < 0) {
+            tableView.getSelectionModel().clearSelection();
+        } else {
+            tableView.getSelectionModel().select(index);
+        }
+        grid.select(index);
+    }
+
+    private void updateBatchButton() {
+        btnAplicarLote.setText("Aplicar lote (" + batchWriter.size() + ")");
+    }
+
+    @FXML
+    private void handleAplicarLote() {
+        int pending = batchWriter.size();
+        if (pending == 0) {
+            new Alert(Alert.AlertType.INFORMATION, "No hay cambios pendientes").showAndWait();
+            return;
+        }
+
+        lblStatus.setText("Aplicando " + pending + " cambios...");
+        long start = System.nanoTime();
+        jobRunner.submit(token -> batchWriter.flush(dbConn, token), result -> {
+            searchCache.clear();
+            updateBatchButton();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            showBatchResult(result, pending, seconds);
+            loadData();
+        }, e -> {
+            // El lote se deshizo completo y los cambios siguen en la cola
+            updateBatchButton();
+            showError(e);
+        });
+    }
+
+    private void showBatchResult(BatchWriter.Result result, int total, double seconds) {
+        List<BatchWriter.Failure> failures = result.getFailures();
+        String summary = String.format("Aplicados %d de %d cambios en %.2f s", result.getApplied(), total, seconds);
+        if (failures.isEmpty()) {
+            new Alert(Alert.AlertType.INFORMATION, summary).showAndWait();
+            return;
+        }
+        showReport(summary + "\n" + failures.size() + " cambios fallaron", failures);
+    }
+
+    // Aviso con la lista de errores desplegada debajo del resumen
+    private void showReport(String summary, List<?> details) {
+        Alert alert = new Alert(Alert.AlertType.WARNING, summary);
+        StringBuilder detail = new StringBuilder();
+        for (Object d : details) {
+            detail.append(d).append('\n');
+        }
+        TextArea area = new TextArea(detail.toString());
+        area.setEditable(false);
+        area.setWrapText(true);
+        alert.getDialogPane().setExpandableContent(area);
+        alert.getDialogPane().setExpanded(true);
+        alert.showAndWait();
+    }
+
+    @FXML
+    private void handleDescartarLote() {
+        int pending = batchWriter.size();
+        if (pending == 0) return;
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                "¿Descartar " + pending + " cambios pendientes?", ButtonType.OK, ButtonType.CANCEL);
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK) {
+            batchWriter.clear();
+            updateBatchButton();
+            lblStatus.setText("Cambios del lote descartados");
+        }
+    }
+
+    @FXML
+    private void handleImportar() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Importar en " + tableName);
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV / TSV", "*.csv", "*.tsv", "*.tab", "*.txt"),
+                new FileChooser.ExtensionFilter("Todos los archivos", "*.*"));
+        File file = chooser.showOpenDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+
+        long totalBytes = file.length();
+        long start = System.nanoTime();
+        lblStatus.setText("Importando " + file.getName() + "...");
+        jobRunner.submit(token -> dbConn.importCsv(tableName, file.toPath(), (rows, bytes) ->
+                Platform.runLater(() -> {
+                    if (token.isCancelled()) return;
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    lblStatus.setText(String.format("Importando %s... %d filas (%.0f%%) - %.0f filas/s",
+                            file.getName(), rows, totalBytes == 0 ? 100.0 : bytes * 100.0 / totalBytes,
+                            rows / Math.max(seconds, 0.001)));
+                }), token), result -> {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String summary = String.format("Importadas %d filas en %.2f s", result.getImported(), seconds);
+            lblStatus.setText(summary);
+            if (result.getRejected() == 0) {
+                new Alert(Alert.AlertType.INFORMATION, summary).showAndWait();
+            } else {
+                showReport(summary + "\n" + result.getRejected() + " filas rechazadas", result.getErrors());
+            }
+            searchCache.clear();
+            loadData();
+        }, this::showError);
+    }
+
+    @FXML
+    private void handleExportar() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(searchFilter == null ? "Exportar " + tableName : "Exportar resultados de búsqueda");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV comprimido", "*.csv.gz"));
+        chooser.setInitialFileName(tableName + ".csv");
+        File file = chooser.showSaveDialog(tableView.getScene().getWindow());
+        if (file == null) return;
+
+        boolean gzip = file.getName().toLowerCase().endsWith(".gz");
+        SearchEngine.Predicate filter = searchFilter;
+        long start = System.nanoTime();
+        lblStatus.setText("Exportando a " + file.getName() + "...");
+        jobRunner.submit(token -> dbConn.exportCsv(tableName, filter, file.toPath(), gzip, (rows, bytes) ->
+                Platform.runLater(() -> {
+                    if (!token.isCancelled()) lblStatus.setText("Exportando... " + transferRate(rows, bytes, start));
+                }), token), result -> lblStatus.setText(String.format("Exportadas %d filas a %s (%s) - %s",
+                result.getRows(), file.getName(), formatBytes(result.getFileSize()),
+                transferRate(result.getRows(), result.getBytes(), start))),
+                this::showError);
+    }
+
+    private static String transferRate(long rows, long bytes, long startNanos) {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 0.001);
+        return String.format("%d filas, %.0f filas/s, %s/s", rows, rows / seconds, formatBytes((long) (bytes / seconds)));
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
     @FXML
     private void handleBuscar() {
+        searchDelay.stop();
+        search(true);
+    }
+
+    /**
+     * Lanza la búsqueda del texto actual. Si viene del teclado (explicit = false) no
+     * muestra diálogos: un texto a medio escribir solo se indica en la barra de estado.
+     */
+    private void search(boolean explicit) {
         String q = txtBuscar.getText().trim();
         if (q.isEmpty()) {
-            loadData();
+            // Al borrar el texto se vuelve a la tabla completa
+            if (explicit || searchFilter != null) loadData();
             return;
         }
 
-        // Usar la primera columna como criterio de búsqueda
-        String searchColumn = dbConn.loadTableStructure(tableName).getColumns().get(0).getName();
-        TableData result = dbConn.searchRecords(tableName, searchColumn, q);
+        SearchEngine.Mode mode = searchMode();
+        SearchEngine.Predicate predicate;
+        try {
+            predicate = dbConn.buildSearch(tableName, mode, searchColumns(mode), q);
+        } catch (IllegalArgumentException e) {
+            if (explicit) {
+                new Alert(Alert.AlertType.WARNING, e.getMessage()).showAndWait();
+            } else {
+                lblStatus.setText("Búsqueda incompleta: " + e.getMessage());
+            }
+            return;
+        }
+        if (explicit && offerIndexes(predicate)) return;
 
-        tableView.getColumns().clear();
-        ObservableList<ObservableList<Object>> data = FXCollections.observableArrayList();
+        TableData cached = searchCache.lookup(predicate);
+        if (cached != null) {
+            // La consulta que siguiera en curso ya no hace falta
+            queryRunner.cancel();
+            showSearchResult(predicate, cached,
+                    "Resultados de búsqueda: " + cached.getRowCount() + " registros (en caché)");
+            return;
+        }
 
-        ArrayList<ColumnInfo> cols = result.getColumns();
-        for (int i = 0; i < cols.size(); i++) {
-            final int colIndex = i;
-            TableColumn<ObservableList<Object>, Object> col = new TableColumn<>(cols.get(i).getName());
-            col.setCellValueFactory(cellData -> {
-                ObservableList<Object> row = cellData.getValue();
-                Object val = (colIndex < row.size()) ? row.get(colIndex) : null;
-                return new SimpleObjectProperty<>(val);
-            });
-            tableView.getColumns().add(col);
+        lblStatus.setText("Buscando \"" + q + "\"...");
+        // Los bloques que llegan se guardan tal cual; la entrada de la caché se arma al final
+        List<TableData> chunks = new ArrayList<>();
+        boolean[] shown = {false};
+        // Un bloque pendiente de pintar como mucho: el cursor espera a la interfaz
+        FxHandoff handoff = new FxHandoff();
+        queryRunner.submit(token ->
+                // Las filas se muestran según llegan del cursor del servidor; la tabla anterior
+                // (con su paginador y su filtro) sigue a la vista hasta el primer bloque para
+                // que no parpadee al escribir
+                dbConn.streamSearch(tableName, predicate, MAX_SEARCH_ROWS, chunk -> {
+                    chunks.add(chunk);
+                    handoff.publish(() -> {
+                        if (token.isCancelled()) return;
+                        if (shown[0]) {
+                            appendRows(chunk);
+                        } else {
+                            shown[0] = true;
+                            showSearchResult(predicate, chunk, "");
+                        }
+                        lblStatus.setText("Buscando \"" + q + "\"... " + tableView.getItems().size() + " registros");
+                    }, token);
+                }, token), total -> {
+            // Solo un resultado completo sirve para refinar después en el cliente
+            TableData all = total < MAX_SEARCH_ROWS || !shown[0] ? merge(chunks) : null;
+            if (!shown[0]) showSearchResult(predicate, all, "");
+            if (total < MAX_SEARCH_ROWS) searchCache.put(predicate, all);
+            lblStatus.setText("Resultados de búsqueda: " + total + " registros - " + predicate.getPlan());
+        }, this::showError);
+    }
+
+    // La vista pasa a ser la de la búsqueda: sin paginador y con su filtro para actualizar y exportar
+    private void showSearchResult(SearchEngine.Predicate predicate, TableData data, String status) {
+        pager = null;
+        searchFilter = predicate;
+        showTableData(data, status);
+    }
+
+    // Un único resultado con los bloques recibidos; si solo hubo uno se usa sin copiar
+    private TableData merge(List<TableData> chunks) {
+        if (chunks.size() == 1) return chunks.get(0);
+        TableData all = dbConn.emptyResult(tableName);
+        for (TableData chunk : chunks) {
+            for (int r = 0; r < chunk.getRowCount(); r++) {
+                all.addRow(chunk.getRow(r));
+            }
+        }
+        return all;
+    }
+
+    private SearchEngine.Mode searchMode() {
+        switch (cbModo.getSelectionModel().getSelectedIndex()) {
+            case 1: return SearchEngine.Mode.FULL_TEXT;
+            case 2: return SearchEngine.Mode.TRIGRAM;
+            default: return SearchEngine.Mode.TYPED;
         }
+    }
+
+    private List<String> searchColumns(SearchEngine.Mode mode) {
+        String selected = cbColumna.getValue();
+        if (selected == null) throw new IllegalArgumentException("Seleccione una columna");
+        if (!ALL_TEXT_COLUMNS.equals(selected)) return Collections.singletonList(selected);
+        if (mode == SearchEngine.Mode.TYPED) {
+            throw new IllegalArgumentException("La búsqueda por tipo es sobre una sola columna; "
+                    + "use texto completo o similitud para buscar en todas las de texto");
+        }
+        return SearchEngine.textColumns(dbConn.loadTableStructure(tableName));
+    }
 
-        for (ArrayList<Object> row : result.getRows()) {
-            data.add(FXCollections.observableArrayList(row));
+    /**
+     * Si la búsqueda no tiene índice en una tabla grande, propone crearlo. Devuelve true
+     * si se lanzó la creación (la búsqueda se repite al terminar).
+     */
+    private boolean offerIndexes(SearchEngine.Predicate predicate) {
+        List<SearchEngine.IndexSuggestion> missing = new ArrayList<>();
+        for (SearchEngine.IndexSuggestion suggestion : predicate.getMissingIndexes()) {
+            if (!declinedIndexes.contains(suggestion.getName())) missing.add(suggestion);
+        }
+        long rows = dbConn.loadTableStructure(tableName).getEstimatedRows();
+        if (missing.isEmpty() || (rows >= 0 && rows < INDEX_SUGGESTION_ROWS)) return false;
+        // Con otra tarea larga en curso se busca sin índice en lugar de interrumpirla
+        if (jobRunner.isRunning()) return false;
+
+        ButtonType crear = new ButtonType("Crear índice", ButtonBar.ButtonData.OK_DONE);
+        ButtonType sinIndice = new ButtonType("Buscar sin índice", ButtonBar.ButtonData.CANCEL_CLOSE);
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                "No hay índice para esta búsqueda y se recorrerá toda la tabla"
+                        + (rows > 0 ? " (unas " + rows + " filas)" : "") + ".\n"
+                        + "¿Crear ahora el índice GIN? La tabla sigue disponible mientras se crea.",
+                crear, sinIndice);
+        TextArea ddl = new TextArea(missing.stream().map(Object::toString).collect(Collectors.joining(";\n")));
+        ddl.setEditable(false);
+        confirm.getDialogPane().setExpandableContent(ddl);
+
+        if (confirm.showAndWait().orElse(sinIndice) != crear) {
+            for (SearchEngine.IndexSuggestion suggestion : missing) {
+                declinedIndexes.add(suggestion.getName());
+            }
+            return false;
         }
 
-        tableView.setItems(data);
-        lblStatus.setText("Resultados de búsqueda: " + data.size() + " registros");
+        lblStatus.setText("Creando índice de búsqueda...");
+        jobRunner.submit(token -> {
+            dbConn.createIndexes(tableName, missing, token);
+            return missing.size();
+        }, n -> handleBuscar(), this::showError);
+        return true;
     }
 
     // NUEVO MÉTODO: Leer por clave primaria
     @FXML
     private void handleReadByPk() {
-        TableData td = dbConn.loadTableStructure(tableName);
+        TableSchema td = dbConn.loadTableStructure(tableName);
         String pkCol = null;
         for (ColumnInfo col : td.getColumns()) {
             if (col.isPrimaryKey()) {
@@ -214,51 +1328,36 @@ public class MainController {
         if (result.isPresent() && !result.get().trim().isEmpty()) {
             String valStr = result.get().trim();
 
-            // Determinar el tipo de la PK para parsear correctamente
-            String pkType = null;
+            // El codec de la PK convierte el texto al tipo de la columna
+            ColumnInfo pkInfo = null;
             for (ColumnInfo col : td.getColumns()) {
                 if (col.getName().equals(pkCol)) {
-                    pkType = col.getType();
+                    pkInfo = col;
                     break;
                 }
             }
 
             Object pkValue;
             try {
-                pkValue = DatabaseConnection.parseValue(valStr, pkType);
+                pkValue = pkInfo.getCodec().parse(valStr);
             } catch (IllegalArgumentException e) {
-                new Alert(Alert.AlertType.ERROR, "Valor inválido para tipo " + pkType + ": " + e.getMessage()).showAndWait();
+                new Alert(Alert.AlertType.ERROR, e.getMessage()).showAndWait();
                 return;
             }
 
-            TableData resultData = dbConn.loadRowByPk(tableName, pkCol, pkValue);
-            if (resultData.getRowCount() == 0) {
-                new Alert(Alert.AlertType.INFORMATION, "No se encontró ningún registro con ese valor.").showAndWait();
-                return;
-            }
-
-            // Mostrar solo la fila encontrada
-            tableView.getColumns().clear();
-            ObservableList<ObservableList<Object>> data = FXCollections.observableArrayList();
-
-            ArrayList<ColumnInfo> cols = resultData.getColumns();
-            for (int i = 0; i < cols.size(); i++) {
-                final int colIndex = i;
-                TableColumn<ObservableList<Object>, Object> col = new TableColumn<>(cols.get(i).getName());
-                col.setCellValueFactory(cellData -> {
-                    ObservableList<Object> row = cellData.getValue();
-                    Object val = (colIndex < row.size()) ? row.get(colIndex) : null;
-                    return new SimpleObjectProperty<>(val);
-                });
-                tableView.getColumns().add(col);
-            }
-
-            for (ArrayList<Object> row : resultData.getRows()) {
-                data.add(FXCollections.observableArrayList(row));
-            }
-
-            tableView.setItems(data);
-            lblStatus.setText("Resultado de búsqueda por PK: 1 registro");
+            final String col = pkCol;
+            lblStatus.setText("Buscando " + pkCol + " = " + valStr + "...");
+            queryRunner.submit(token -> dbConn.loadRowByPk(tableName, col, pkValue, token), resultData -> {
+                if (resultData.getRowCount() == 0) {
+                    lblStatus.setText("Sin resultados para " + col + " = " + valStr);
+                    new Alert(Alert.AlertType.INFORMATION, "No se encontró ningún registro con ese valor.").showAndWait();
+                    return;
+                }
+                // Mostrar solo la fila encontrada; la vista anterior pierde su paginador y su filtro
+                pager = null;
+                searchFilter = null;
+                showTableData(resultData, "Resultado de búsqueda por PK: 1 registro");
+            }, this::showError);
         }
     }
 }
\ No newline at end of file
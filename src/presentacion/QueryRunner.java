@@ -0,0 +1,82 @@
+package presentacion;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.concurrent.Task;
+import logica.CancelToken;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Ejecuta el acceso a la base de datos fuera del hilo de JavaFX, en hilos virtuales,
+ * y vuelve al hilo de la interfaz solo para publicar el resultado.
+ * Cada instancia tiene como mucho una tarea activa: enviar una nueva cancela la
+ * anterior, también en el servidor mediante Statement.cancel().
+ */
+public class QueryRunner {
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(CancelToken token) throws Exception;
+    }
+
+    private final ReadOnlyBooleanWrapper running = new ReadOnlyBooleanWrapper(false);
+    private Task<?> currentTask;
+    private CancelToken currentToken;
+
+    /** Lanza el trabajo en segundo plano; debe llamarse desde el hilo de JavaFX. */
+    public <T> void submit(Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        cancel();
+
+        CancelToken token = new CancelToken();
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                T result = work.run(token);
+                token.throwIfCancelled();
+                return result;
+            }
+        };
+        task.setOnSucceeded(e -> {
+            finish(task);
+            onSuccess.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            finish(task);
+            if (!token.isCancelled() && onError != null) {
+                onError.accept(task.getException());
+            }
+        });
+        task.setOnCancelled(e -> finish(task));
+
+        currentTask = task;
+        currentToken = token;
+        running.set(true);
+        EXECUTOR.execute(task);
+    }
+
+    /** Cancela la tarea en curso, si la hay. */
+    public void cancel() {
+        if (currentTask == null) return;
+        currentToken.cancel();
+        // Sin interrumpir el hilo: cortar el socket dejaría la conexión del pool inutilizable
+        currentTask.cancel(false);
+        currentTask = null;
+        currentToken = null;
+        running.set(false);
+    }
+
+    private void finish(Task<?> task) {
+        if (currentTask == task) {
+            currentTask = null;
+            currentToken = null;
+            running.set(false);
+        }
+    }
+
+    public boolean isRunning() { return running.get(); }
+    public ReadOnlyBooleanProperty runningProperty() { return running.getReadOnlyProperty(); }
+}
@@ -0,0 +1,232 @@
+package presentacion;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableListBase;
+import modelo.TableData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Filas de la TableView como números de fila dentro de los TableData cargados. Los
+ * valores no se copian: cada celda los lee de las columnas primitivas al pintarse, y
+ * las páginas nuevas se enlazan como bloques en lugar de volcarse en otra lista.
+ *
+ * Una fila guardada no cambia nunca. Editar o releer una fila añade la versión nueva a
+ * un bloque propio y la posición pasa a apuntar a ella, así que el número de fila
+ * identifica también la versión: sirve como antes servía la identidad de la lista de la fila.
+ */
+final class TableRowModel extends ObservableListBase<Integer> {
+    private final List<TableData> blocks = new ArrayList<>();
+    // Primer número de fila de cada bloque; los bloques se numeran seguidos y ninguno está
+    // vacío, para que dos bloques no empiecen en el mismo número
+    private int[] blockStart = new int[4];
+    private int nextId;
+    // Resultado inicial, del que salen las columnas del bloque de filas editadas
+    private final TableData template;
+    // Bloque para las filas editadas o releídas; solo se le añaden filas si es el último
+    private TableData writable;
+    // Números de fila en el orden de la vista
+    private int[] order;
+    private int size;
+    // Un valor reutilizable por columna para la cellValueFactory
+    private final CellValue[] cells;
+
+    TableRowModel(TableData data) {
+        template = data;
+        order = new int[Math.max(16, data.getRowCount())];
+        cells = new CellValue[data.getColumnCount()];
+        for (int c = 0; c < cells.length; c++) {
+            cells[c] = new CellValue(c);
+        }
+        addBlock(data);
+    }
+
+    /** Añade al final las filas de una página o bloque de resultados, sin copiarlas. */
+    void appendBlock(TableData chunk) {
+        if (chunk.getRowCount() == 0) return;
+        int from = size;
+        beginChange();
+        addBlock(chunk);
+        nextAdd(from, size);
+        endChange();
+    }
+
+    private void addBlock(TableData block) {
+        if (block.getRowCount() == 0) return;
+        if (blocks.size() == blockStart.length) {
+            blockStart = Arrays.copyOf(blockStart, blockStart.length * 2);
+        }
+        blockStart[blocks.size()] = nextId;
+        blocks.add(block);
+        ensureCapacity(size + block.getRowCount());
+        for (int r = 0; r < block.getRowCount(); r++) {
+            order[size++] = nextId++;
+        }
+    }
+
+    // Guarda una fila nueva y devuelve su número
+    private int store(List<Object> values) {
+        if (writable == null || blocks.get(blocks.size() - 1) != writable) {
+            writable = template.emptyCopy();
+            if (blocks.size() == blockStart.length) {
+                blockStart = Arrays.copyOf(blockStart, blockStart.length * 2);
+            }
+            blockStart[blocks.size()] = nextId;
+            blocks.add(writable);
+        }
+        writable.addRow(new ArrayList<>(values));
+        return nextId++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > order.length) {
+            order = Arrays.copyOf(order, Math.max(capacity, order.length + (order.length >> 1)));
+        }
+    }
+
+    private int blockOf(int id) {
+        int b = Arrays.binarySearch(blockStart, 0, blocks.size(), id);
+        return b >= 0 ? b : -b - 2;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getId(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Número de fila que hay en la posición, sin boxing. */
+    int getId(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return order[index];
+    }
+
+    /** Posición de la fila en la vista, o -1 si ya no está. */
+    int indexOfId(int id) {
+        for (int i = 0; i < size; i++) {
+            if (order[i] == id) return i;
+        }
+        return -1;
+    }
+
+    Object getValue(int id, int column) {
+        int b = blockOf(id);
+        return blocks.get(b).getValueAt(id - blockStart[b], column);
+    }
+
+    /** Copia de los valores de la fila, para el formulario o para comparar. */
+    ArrayList<Object> getRow(int id) {
+        int b = blockOf(id);
+        return blocks.get(b).getRow(id - blockStart[b]);
+    }
+
+    /** Inserta una fila nueva en la posición y devuelve su número. */
+    int addRow(int index, List<Object> values) {
+        if (index < 0 || index > size) throw new IndexOutOfBoundsException(index);
+        int id = store(values);
+        ensureCapacity(size + 1);
+        System.arraycopy(order, index, order, index + 1, size - index);
+        order[index] = id;
+        size++;
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+        return id;
+    }
+
+    /** Sustituye la fila de la posición por una versión nueva y devuelve su número. */
+    int setRow(int index, List<Object> values) {
+        int old = getId(index);
+        int id = store(values);
+        order[index] = id;
+        beginChange();
+        nextSet(index, old);
+        endChange();
+        return id;
+    }
+
+    @Override
+    public Integer remove(int index) {
+        int old = getId(index);
+        System.arraycopy(order, index + 1, order, index, size - index - 1);
+        size--;
+        beginChange();
+        nextRemove(index, Integer.valueOf(old));
+        endChange();
+        return old;
+    }
+
+    /** Quita las filas de las posiciones dadas (crecientes y sin repetir) en una sola pasada. */
+    void removeAt(int[] positions) {
+        if (positions.length == 0) return;
+        beginChange();
+        int write = positions[0];
+        int removed = 0;
+        for (int read = positions[0]; read < size; read++) {
+            if (removed < positions.length && positions[removed] == read) {
+                // Posición en la lista tal como queda tras los borrados anteriores
+                nextRemove(read - removed, Integer.valueOf(order[read]));
+                removed++;
+            } else {
+                order[write++] = order[read];
+            }
+        }
+        size = write;
+        endChange();
+    }
+
+    /** Lo usa la ordenación en memoria de la tabla, que solo reordena las mismas filas. */
+    @Override
+    public boolean setAll(Collection<? extends Integer> ids) {
+        List<Integer> removed = new ArrayList<>(this);
+        order = new int[Math.max(16, ids.size())];
+        size = 0;
+        for (Integer id : ids) {
+            order[size++] = id;
+        }
+        beginChange();
+        nextReplace(0, size, removed);
+        endChange();
+        return true;
+    }
+
+    /** Valor de la celda para la cellValueFactory; el objeto devuelto se reutiliza. */
+    ObservableValue<Object> cellValue(int id, int column) {
+        CellValue cell = cells[column];
+        cell.id = id;
+        return cell;
+    }
+
+    /**
+     * La celda lee el valor en cuanto lo recibe y solo se suscribe para enterarse de
+     * cambios. Una versión de fila no cambia nunca (un cambio es otra fila en la lista),
+     * así que no hay nada que avisar y basta un objeto por columna en vez de uno por llamada.
+     */
+    private final class CellValue implements ObservableValue<Object> {
+        private final int column;
+        private int id;
+
+        CellValue(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public Object getValue() {
+            return TableRowModel.this.getValue(id, column);
+        }
+
+        @Override public void addListener(ChangeListener<? super Object> listener) { }
+        @Override public void removeListener(ChangeListener<? super Object> listener) { }
+        @Override public void addListener(InvalidationListener listener) { }
+        @Override public void removeListener(InvalidationListener listener) { }
+    }
+}
@@ -0,0 +1,71 @@
+package presentacion;
+
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import modelo.ColumnInfo;
+import modelo.TableData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columnas de la TableView de una tabla. Se crean una vez por esquema y se conservan
+ * entre recargas: la navegación, las búsquedas y la lectura por PK solo cambian las
+ * filas, sin volver a crear columnas, celdas ni su CSS. De paso se mantienen los
+ * anchos que haya ajustado el usuario.
+ */
+final class TableViewBuilder {
+    private final TableView<Integer> tableView;
+    private TableRowModel rows = new TableRowModel(new TableData());
+    // Nombre y tipo de las columnas construidas, para saber si siguen valiendo
+    private List<String> signature = new ArrayList<>();
+    // Rejilla sobre Canvas que muestra las mismas filas en la vista compacta, si la hay
+    private CanvasGrid grid;
+
+    TableViewBuilder(TableView<Integer> tableView) {
+        this.tableView = tableView;
+        tableView.setItems(rows);
+    }
+
+    /**
+     * Muestra las filas del resultado. Las columnas solo se crean si el esquema ha
+     * cambiado; si no, se cambian únicamente los items.
+     */
+    TableRowModel show(TableData data) {
+        ensureColumns(data.getColumns());
+        rows = new TableRowModel(data);
+        tableView.setItems(rows);
+        if (grid != null) grid.setRows(rows, data.getColumns());
+        return rows;
+    }
+
+    TableRowModel getRows() { return rows; }
+
+    void setGrid(CanvasGrid grid) {
+        this.grid = grid;
+        grid.setRows(rows, new ArrayList<>());
+    }
+
+    private void ensureColumns(List<ColumnInfo> columns) {
+        List<String> wanted = new ArrayList<>(columns.size());
+        for (ColumnInfo col : columns) {
+            wanted.add(col.getName() + ":" + col.getType());
+        }
+        if (wanted.equals(signature)) return;
+
+        List<TableColumn<Integer, ?>> built = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            built.add(createColumn(columns.get(i), i));
+        }
+        tableView.getColumns().setAll(built);
+        signature = wanted;
+    }
+
+    // Las factorías leen del modelo actual, así que sirven para todas las cargas de la columna
+    private TableColumn<Integer, Object> createColumn(ColumnInfo info, int index) {
+        TableColumn<Integer, Object> column = new TableColumn<>(info.getName());
+        column.setCellValueFactory(cellData -> rows.cellValue(cellData.getValue(), index));
+        column.setCellFactory(TypedCells.forColumn(info, () -> rows));
+        return column;
+    }
+}
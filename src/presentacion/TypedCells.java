@@ -0,0 +1,301 @@
+package presentacion;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.util.Callback;
+import modelo.ColumnInfo;
+import modelo.TypeCodec;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.NumberFormat;
+import java.time.DateTimeException;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Celdas de la tabla especializadas por tipo de columna. El formateador de cada columna
+ * (números y fechas según la configuración regional) se crea una sola vez, y el texto de
+ * cada fila se guarda en una caché de la columna: al desplazarse adelante y atrás, o al
+ * repintar, las filas ya vistas no se vuelven a formatear.
+ */
+final class TypedCells {
+    // Caracteres de texto que se muestran en la celda; el resto se corta con "…"
+    static final int MAX_TEXT_CHARS = 120;
+    // Decimales máximos al mostrar float y numeric (el tope de DecimalFormat para double)
+    private static final int MAX_FRACTION_DIGITS = 340;
+
+    private TypedCells() { }
+
+    /** Factoría de celdas para la columna; {@code rows} da el modelo que se muestra ahora. */
+    static Callback<TableColumn<Integer, Object>, TableCell<Integer, Object>> forColumn(
+            ColumnInfo column, Supplier<TableRowModel> rows) {
+        TextCache cache = new TextCache();
+        TypeCodec codec = column.getCodec();
+        switch (codec.getCategory()) {
+            case NUMBER: {
+                NumberFormat format = numberFormat(codec);
+                return c -> new NumberCell(cache, rows, format);
+            }
+            case BOOLEAN:
+                return c -> new BooleanCell(cache, rows);
+            case DATE:
+                return dateCells(cache, rows, DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+            case TIMESTAMP:
+                return dateCells(cache, rows, DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM));
+            case TIME:
+                return dateCells(cache, rows, DateTimeFormatter.ofLocalizedTime(FormatStyle.MEDIUM));
+            case UUID:
+                return c -> new UuidCell(cache, rows);
+            default:
+                return c -> new TextCell(cache, rows);
+        }
+    }
+
+    /**
+     * El mismo formato que las celdas de la columna, como función suelta para quien pinta
+     * sin celdas (la rejilla sobre Canvas). Cada llamada crea sus propios formateadores.
+     */
+    static Function<Object, String> formatterFor(ColumnInfo column) {
+        TypeCodec codec = column.getCodec();
+        switch (codec.getCategory()) {
+            case NUMBER: {
+                NumberFormat format = numberFormat(codec);
+                return value -> formatNumber(format, value);
+            }
+            case BOOLEAN:
+                return TypedCells::formatBoolean;
+            case DATE:
+                return temporal(DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM));
+            case TIMESTAMP:
+                return temporal(DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM));
+            case TIME:
+                return temporal(DateTimeFormatter.ofLocalizedTime(FormatStyle.MEDIUM));
+            case UUID:
+                return Object::toString;
+            default:
+                return TypedCells::formatText;
+        }
+    }
+
+    /** Alineación de la columna: números a la derecha, booleanos centrados. */
+    static Pos alignmentFor(ColumnInfo column) {
+        switch (column.getCodec().getCategory()) {
+            case NUMBER: return Pos.CENTER_RIGHT;
+            case BOOLEAN: return Pos.CENTER;
+            default: return Pos.CENTER_LEFT;
+        }
+    }
+
+    private static Function<Object, String> temporal(DateTimeFormatter format) {
+        return value -> formatTemporal(format, value);
+    }
+
+    private static Callback<TableColumn<Integer, Object>, TableCell<Integer, Object>> dateCells(
+            TextCache cache, Supplier<TableRowModel> rows, DateTimeFormatter format) {
+        return c -> new DateCell(cache, rows, format);
+    }
+
+    // Enteros sin separador de miles (suelen ser claves, códigos o años); decimales con él
+    private static NumberFormat numberFormat(TypeCodec codec) {
+        Class<?> type = codec.getJavaClass();
+        if (type == Long.class || type == Integer.class) {
+            NumberFormat format = NumberFormat.getIntegerInstance();
+            format.setGroupingUsed(false);
+            return format;
+        }
+        NumberFormat format = NumberFormat.getNumberInstance();
+        format.setMaximumFractionDigits(MAX_FRACTION_DIGITS);
+        return format;
+    }
+
+    static String formatNumber(NumberFormat format, Object value) {
+        if (!(value instanceof Number)) return value.toString();
+        // En numeric los ceros de la escala son parte del valor (importes con 2 decimales)
+        if (value instanceof BigDecimal) {
+            format.setMinimumFractionDigits(Math.max(0, ((BigDecimal) value).scale()));
+        } else {
+            format.setMinimumFractionDigits(0);
+            // Al pasar a double 0.1f sería 0,10000000149011612: se toman los dígitos del float
+            if (value instanceof Float && Float.isFinite((Float) value)) {
+                value = new BigDecimal(Float.toString((Float) value));
+            }
+        }
+        return format.format(value);
+    }
+
+    static String formatTemporal(DateTimeFormatter format, Object value) {
+        try {
+            if (value instanceof java.sql.Date) return format.format(((java.sql.Date) value).toLocalDate());
+            if (value instanceof Timestamp) return format.format(((Timestamp) value).toLocalDateTime());
+            if (value instanceof Time) return format.format(((Time) value).toLocalTime());
+            if (value instanceof TemporalAccessor) return format.format((TemporalAccessor) value);
+        } catch (DateTimeException e) {
+            // Valor que el formato regional no sabe mostrar: se deja el texto tal cual
+        }
+        return value.toString();
+    }
+
+    static String formatBoolean(Object value) {
+        if (value instanceof Boolean) return (Boolean) value ? "Sí" : "No";
+        return value.toString();
+    }
+
+    /** Texto en una línea y cortado con "…" si pasa de MAX_TEXT_CHARS. */
+    static String formatText(Object value) {
+        String text = value.toString();
+        boolean cut = text.length() > MAX_TEXT_CHARS;
+        if (cut) {
+            // Sin partir un carácter que ocupa dos char
+            int end = MAX_TEXT_CHARS;
+            if (Character.isHighSurrogate(text.charAt(end - 1))) end--;
+            text = text.substring(0, end);
+        }
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0 || text.indexOf('\t') >= 0) {
+            text = text.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+        }
+        return cut ? text + "…" : text;
+    }
+
+    /**
+     * Texto ya formateado de las últimas filas pintadas de una columna, por número de
+     * fila. Es de correspondencia directa (cada fila tiene un único hueco), así que
+     * consultar y guardar no crea objetos. Los números de fila solo valen dentro de
+     * un modelo: al cambiar de modelo se vacía.
+     */
+    static final class TextCache {
+        // Potencia de dos, bastante más que las filas que caben en pantalla
+        private static final int SIZE = 1024;
+        private final int[] ids = new int[SIZE];
+        private final String[] texts = new String[SIZE];
+        private TableRowModel owner;
+
+        TextCache() {
+            Arrays.fill(ids, -1);
+        }
+
+        String get(TableRowModel model, int id) {
+            if (model != owner) {
+                Arrays.fill(ids, -1);
+                Arrays.fill(texts, null);
+                owner = model;
+                return null;
+            }
+            int slot = id & (SIZE - 1);
+            return ids[slot] == id ? texts[slot] : null;
+        }
+
+        void put(int id, String text) {
+            int slot = id & (SIZE - 1);
+            ids[slot] = id;
+            texts[slot] = text;
+        }
+    }
+
+    /** Celda que formatea con su tipo y reutiliza el texto de la caché de la columna. */
+    abstract static class TypedCell extends TableCell<Integer, Object> {
+        private final TextCache cache;
+        private final Supplier<TableRowModel> rows;
+
+        TypedCell(TextCache cache, Supplier<TableRowModel> rows, Pos alignment) {
+            this.cache = cache;
+            this.rows = rows;
+            setAlignment(alignment);
+        }
+
+        @Override
+        protected void updateItem(Object item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setText(null);
+                return;
+            }
+            TableRowModel model = rows.get();
+            int index = getIndex();
+            if (index < 0 || index >= model.size()) {
+                setText(format(item));
+                return;
+            }
+            // Una versión de fila no cambia: su número basta como clave de la caché
+            int id = model.getId(index);
+            String text = cache.get(model, id);
+            if (text == null) {
+                text = format(item);
+                cache.put(id, text);
+            }
+            setText(text);
+        }
+
+        protected abstract String format(Object value);
+    }
+
+    static final class NumberCell extends TypedCell {
+        private final NumberFormat format;
+
+        NumberCell(TextCache cache, Supplier<TableRowModel> rows, NumberFormat format) {
+            super(cache, rows, Pos.CENTER_RIGHT);
+            this.format = format;
+        }
+
+        @Override
+        protected String format(Object value) {
+            return formatNumber(format, value);
+        }
+    }
+
+    static final class DateCell extends TypedCell {
+        private final DateTimeFormatter format;
+
+        DateCell(TextCache cache, Supplier<TableRowModel> rows, DateTimeFormatter format) {
+            super(cache, rows, Pos.CENTER_LEFT);
+            this.format = format;
+        }
+
+        @Override
+        protected String format(Object value) {
+            return formatTemporal(format, value);
+        }
+    }
+
+    static final class BooleanCell extends TypedCell {
+        BooleanCell(TextCache cache, Supplier<TableRowModel> rows) {
+            super(cache, rows, Pos.CENTER);
+        }
+
+        @Override
+        protected String format(Object value) {
+            return formatBoolean(value);
+        }
+    }
+
+    static final class UuidCell extends TypedCell {
+        UuidCell(TextCache cache, Supplier<TableRowModel> rows) {
+            super(cache, rows, Pos.CENTER_LEFT);
+            // Monoespaciada para que los UUID queden alineados y se comparen a simple vista
+            setStyle("-fx-font-family: monospace;");
+        }
+
+        @Override
+        protected String format(Object value) {
+            return value.toString();
+        }
+    }
+
+    /** Texto y tipos sin celda propia: en una línea y cortado si es largo. */
+    static final class TextCell extends TypedCell {
+        TextCell(TextCache cache, Supplier<TableRowModel> rows) {
+            super(cache, rows, Pos.CENTER_LEFT);
+        }
+
+        @Override
+        protected String format(Object value) {
+            return formatText(value);
+        }
+    }
+}